@@ -0,0 +1,269 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.Arrays;
+import java.util.List;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A population of equal-length BitVectors, viewed as a matrix 
+ * with one row per individual and one column per bit position.
+ * 
+ * Rows are stored as BitVectors, and row(i) gives direct access to them.
+ * Column-wise information (per-position counts, columns, and the 
+ * bit-sliced column layout in which each word holds the value of one 
+ * position for 64 consecutive individuals) is computed on demand by 
+ * transposing 64x64 blocks of words, rather than by reading 
+ * individual bits.
+ */
+
+public final class BitMatrix {
+	
+	private static final int BLOCK = Long.SIZE;
+	
+	private final BitVector [] rows;
+	private final int numColumns;
+	
+	///////////////////////////////
+	
+	public BitMatrix( int numRows, int numColumns ) {
+		if( numRows < 0 || numColumns < 0 )
+			throw new IllegalArgumentException();
+		
+		this.rows = new BitVector [ numRows ];
+		this.numColumns = numColumns;
+		for( int i=0; i<numRows; ++i )
+			rows[ i ] = new BitVector( numColumns );
+	}
+
+	/**
+	 * Copies the specified rows, which must all have the same length.
+	 */
+	public BitMatrix( int numColumns, List< BitVector > rows ) {
+		this( rows.size(), numColumns );
+		for( int i=0; i<rows.size(); ++i )
+			setRow( i, rows.get( i ) );
+	}
+	
+	public BitMatrix( BitMatrix rhs ) {
+		this( rhs.numRows(), rhs.numColumns() );
+		for( int i=0; i<rows.length; ++i )
+			setRow( i, rhs.rows[ i ] );
+	}
+	
+	///////////////////////////////
+
+	public int numRows() { return rows.length; }
+	
+	public int numColumns() { return numColumns; }
+	
+	public boolean get( int row, int column ) {
+		return row( row ).get( column );
+	}
+
+	public void set( int row, int column, boolean value ) {
+		row( row ).set( column, value );
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * @return the live row: changes to it are changes to this matrix.
+	 */
+	public BitVector row( int row ) {
+		if( row < 0 || row >= rows.length )
+			throw new IllegalArgumentException();
+		
+		return rows[ row ];
+	}
+	
+	public void getRow( int row, BitVector dest ) {
+		if( dest.length() != numColumns )
+			throw new IllegalArgumentException();
+
+		final BitVector source = row( row );
+		for( int i=0; i<source.numWords(); ++i )
+			dest.setWord( i, source.getWord( i ) );
+	}
+	
+	public void setRow( int row, BitVector source ) {
+		if( source.length() != numColumns )
+			throw new IllegalArgumentException();
+
+		final BitVector dest = row( row );
+		for( int i=0; i<source.numWords(); ++i )
+			dest.setWord( i, source.getWord( i ) );
+	}
+
+	///////////////////////////////
+	
+	/**
+	 * @return the number of rows in which each column is set.
+	 */
+	public int [] columnCounts() {
+		return columnCounts( new int [ numColumns ] );
+	}
+
+	/**
+	 * Writes the number of rows in which each column is set into dest.
+	 * @return dest
+	 */
+	public int [] columnCounts( int [] dest ) {
+		if( dest.length < numColumns )
+			throw new IllegalArgumentException();
+		
+		Arrays.fill( dest, 0, numColumns, 0 );
+		final long [] block = new long [ BLOCK ];
+		for( int rowBlock=0; rowBlock<numRowBlocks(); ++rowBlock ) {
+			for( int w=0; w<numColumnBlocks(); ++w ) {
+				loadBlock( rowBlock, w, block );
+				final int columnBase = w * BLOCK;
+				final int end = Math.min( BLOCK, numColumns - columnBase );
+				for( int i=0; i<end; ++i )
+					dest[ columnBase + i ] += Long.bitCount( block[ i ] );
+			}
+		}
+		return dest;
+	}
+
+	///////////////////////////////
+	
+	/**
+	 * @return the number of words per column in the bit-sliced layout.
+	 */
+	public int numRowBlocks() { return ( rows.length + BLOCK - 1 ) / BLOCK; }
+
+	private int numColumnBlocks() { return ( numColumns + BLOCK - 1 ) / BLOCK; }
+	
+	/**
+	 * Writes the matrix in bit-sliced (column-major) layout, so that 
+	 * bit r of dest[ c * numRowBlocks() + b ] holds column c of row 64*b + r.
+	 * Each word therefore holds one bit position for 64 individuals, 
+	 * ready to be evaluated 64 at a time with bitwise operations.
+	 * Matrices whose layout would exceed Integer.MAX_VALUE words are rejected. 
+	 * @return dest
+	 */
+	public long [] columnWords( long [] dest ) {
+		final int numRowBlocks = numRowBlocks();
+		final long numWords = (long)numColumns * numRowBlocks;
+		if( numWords > Integer.MAX_VALUE || dest.length < numWords )
+			throw new IllegalArgumentException();
+		
+		final long [] block = new long [ BLOCK ];
+		for( int rowBlock=0; rowBlock<numRowBlocks; ++rowBlock ) {
+			for( int w=0; w<numColumnBlocks(); ++w ) {
+				loadBlock( rowBlock, w, block );
+				final int columnBase = w * BLOCK;
+				final int end = Math.min( BLOCK, numColumns - columnBase );
+				for( int i=0; i<end; ++i )
+					dest[ ( columnBase + i ) * numRowBlocks + rowBlock ] = block[ i ];
+			}
+		}
+		return dest;
+	}
+
+	/**
+	 * Copies column into dest, which must have length numRows().
+	 */
+	public void getColumn( int column, BitVector dest ) {
+		if( column < 0 || column >= numColumns )
+			throw new IllegalArgumentException();
+		if( dest.length() != rows.length )
+			throw new IllegalArgumentException();
+		
+		final int w = column / BLOCK;
+		final long bit = 1L << column;
+		for( int rowBlock=0; rowBlock<numRowBlocks(); ++rowBlock ) {
+			final int base = rowBlock * BLOCK;
+			final int end = Math.min( BLOCK, rows.length - base );
+			long word = 0L;
+			for( int i=0; i<end; ++i )
+				if( ( rows[ base + i ].getWord( w ) & bit ) != 0L )
+					word |= 1L << i;
+			dest.setWord( rowBlock, word );
+		}
+	}
+	
+	/**
+	 * @return a new numColumns() x numRows() matrix, 
+	 * i.e. one whose rows are the columns of this one.
+	 */
+	public BitMatrix transpose() {
+		BitMatrix result = new BitMatrix( numColumns, rows.length );
+		final long [] block = new long [ BLOCK ];
+		for( int rowBlock=0; rowBlock<numRowBlocks(); ++rowBlock ) {
+			for( int w=0; w<numColumnBlocks(); ++w ) {
+				loadBlock( rowBlock, w, block );
+				final int columnBase = w * BLOCK;
+				final int end = Math.min( BLOCK, numColumns - columnBase );
+				for( int i=0; i<end; ++i )
+					result.rows[ columnBase + i ].setWord( rowBlock, block[ i ] );
+			}
+		}
+		return result;
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * Loads the 64x64 block of bits at word w of rows [64*rowBlock,64*rowBlock+64),
+	 * transposed, so that bit r of block[ c ] is column 64*w + c of row 64*rowBlock + r.
+	 */
+	private void loadBlock( int rowBlock, int w, long [] block ) {
+		final int base = rowBlock * BLOCK;
+		final int end = Math.min( BLOCK, rows.length - base );
+		for( int i=0; i<end; ++i )
+			block[ i ] = rows[ base + i ].getWord( w );
+		for( int i=end; i<BLOCK; ++i )
+			block[ i ] = 0L;
+		
+		transpose64( block );
+	}
+	
+	/**
+	 * In-place transpose of a 64x64 bit matrix, held as 64 words 
+	 * with bit j of a[ i ] being element (i,j), by recursive exchange 
+	 * of off-diagonal sub-blocks: 6 passes of 32 word pairs.
+	 * 
+	 * @book{Warren:2012:HD,
+	 *   author = {Warren, Henry S.},
+	 *   title = {Hacker's Delight},
+	 *   edition = {2nd},
+	 *   year = {2012},
+	 *   publisher = {Addison-Wesley},
+	 * }
+	 */
+	static void transpose64( long [] a ) {
+		long m = 0x00000000FFFFFFFFL;
+		for( int j = 32; j != 0; j >>>= 1, m ^= ( m << j ) ) {
+			for( int k = 0; k < BLOCK; k = ( ( k | j ) + 1 ) & ~j ) {
+				final long t = ( ( a[ k ] >>> j ) ^ a[ k | j ] ) & m;
+				a[ k ] ^= t << j;
+				a[ k | j ] ^= t;
+			}
+		}
+	}
+	
+	///////////////////////////////
+	
+	public boolean equals( Object obj ) {
+		if( !( obj instanceof BitMatrix ) )
+			return false;
+		
+		BitMatrix rhs = (BitMatrix)obj;
+		return numColumns == rhs.numColumns && Arrays.equals( rows, rhs.rows );
+	}
+	
+	public int hashCode() {
+		return 31 * numColumns + Arrays.hashCode( rows );
+	}
+	
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for( int i=0; i<rows.length; ++i )
+			result.append( rows[ i ] ).append( '\n' );
+		return result.toString();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -4,28 +4,95 @@
 package org.mitlware.solution.bitvector;
 
 import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
-import java.util.Iterator;
+import java.util.Comparator;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Random;
-import java.util.function.Consumer;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import org.mitlware.solution.util.SplitMix64;
 
 //////////////////////////////////////////////////////////////////////
 
 public final class BitVector {
 	
-	private BitSet impl;
+	/*
+	 * Bits are packed little-endian into 64-bit words: bit i lives in 
+	 * word i >> 6 at position ( i & 63 ). There are exactly as many words 
+	 * as length requires, and any bits of the last word beyond length 
+	 * are always kept clear, so that the bulk operations below can work 
+	 * a whole word at a time without consulting length. 
+	 * 
+	 * The words are held in chunks, so that copies made by clone() can 
+	 * share them chunk by chunk: word i is 
+	 * chunks[ i >>> chunkShift ][ i & chunkMask ], and every chunk 
+	 * but the last is full.
+	 */
+	
+	private static final int ADDRESS_BITS_PER_WORD = 6;
+	private static final int BITS_PER_WORD = 1 << ADDRESS_BITS_PER_WORD;
+	private static final long WORD_MASK = 0xffffffffffffffffL;
+	
+	/** Chunks of 1024 words, i.e. 64K bits */
+	private static final int CHUNK_SHIFT = 10;
+	private static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;
+	/** Puts every word index in chunk 0, for a wrapped array longer than a chunk */
+	private static final int WHOLE_ARRAY_SHIFT = Integer.SIZE - 1;
+	
+	private final long [][] chunks;
+	private final int chunkShift;
+	private final int chunkMask;
+	private final int numWords;
 	private final int length;
 	
+	/*
+	 * Allocated by the first clone(), so that a vector that is never 
+	 * cloned pays nothing for sharing. owners[ c ] is then the number of 
+	 * BitVectors that reference chunks[ c ], shared by all of them, or null 
+	 * once this vector holds the only reference. A chunk is copied before 
+	 * being written only while its count exceeds one, so that once the other 
+	 * sharers have detached, it is written in place.
+	 */
+	
+	private AtomicInteger [] owners = null;
+	
+	/*
+	 * True if the words are an array supplied by the caller via wrap, 
+	 * held as a single chunk, which must never be shared, since 
+	 * copy-on-write would then detach this vector from it.
+	 */
+	
+	private boolean wrapped = false;
+	
+	/*
+	 * Built on demand by rank and select, and discarded by any mutation.
+	 */
+	
+	private RankIndex rankIndex = null;
+	
+	/*
+	 * When fingerprinting is enabled, fingerprint is kept equal to 
+	 * computeFingerprint() by every mutator.
+	 */
+	
+	private boolean fingerprinting;
+	private long fingerprint;
+	
 	///////////////////////////////
 	
 	public static BitVector fromInt( int x ) {
 		BitVector result = new BitVector( 32 );
-		for( int i=0; i<32; ++i )
-			if( ( x & ( 1 << i ) ) != 0 )
-				result.set( i );
-		
+		result.putWord( 0, x & 0xffffffffL );
 		return result;
 	}
 
@@ -35,10 +102,10 @@ public final class BitVector {
 
 	public static BitVector fromLong( long x, int numBits ) {
 		BitVector result = new BitVector( numBits );
-		for( int i=0; i<Math.min( 64, numBits ); ++i )
-			if( ( x & ( 1L << i ) ) != 0L )
-				result.set( i );
-		
+		if( numBits > 0 ) {
+			result.putWord( 0, x );
+			result.maskTail();
+		}
 		return result;
 	}
 	
@@ -56,35 +123,211 @@ public final class BitVector {
 	///////////////////////////////
 
 	/*
-	 * From http://stackoverflow.com/questions/29526985/java-from-biginteger-to-bitset-and-back 
-	 * BigInteger is big-endian andBitSet is little-endian, so the bytes will be reversed when 
-	 * trying to convert directly from one to the other via toByteArray(). 
-	 * The simplest solution is to just reverse them again. 
+	 * BigInteger.toByteArray() is big-endian, so byte k of the 
+	 * little-endian words is read from the end of the array.
 	 */
 	
 	public BitVector( int numBits, BigInteger x ) {
-	
-		length = numBits;
+		this( numBits );
 		
-		byte [] sourceArray = x.toByteArray();		
-		if( numBits > sourceArray.length * 8 )
+		byte [] source = x.toByteArray();		
+		if( numBits > source.length * 8 )
 			throw new IllegalArgumentException();
 		
-		impl = BitSet.valueOf(reverse( sourceArray ));
+		final int numBytes = Math.min( source.length, numWords * 8 );
+		for( int k=0; k<numBytes; ++k ) {
+			final int u = k >>> 3;
+			putWord( u, word( u ) | ( source[ source.length - 1 - k ] & 0xffL ) << ( ( k & 7 ) << 3 ) );
+		}
+		maskTail();
 	}
 	
 	public BigInteger toBigInteger() {
-		return new BigInteger(1, reverse(impl.toByteArray() ) );		
+		ByteBuffer bytes = ByteBuffer.allocate( numWords * 8 );
+		for( int i=numWords - 1; i>=0; --i )
+			bytes.putLong( word( i ) );
+		
+		return new BigInteger( 1, bytes.array() );		
+	}
+	
+	///////////////////////////////
+	
+	// Interop with long [], LongBuffer and ByteBuffer. In all of these, 
+	// bit i is bit ( i & 63 ) of long ( i >> 6 ), which is also bit ( i & 7 ) 
+	// of byte ( i >> 3 ) when the bytes are little-endian, as for BitSet.
+	
+	/**
+	 * Returns a bit vector that uses words as its storage, without copying. 
+	 * Changes to the vector write through to words, and vice versa.
+	 * 
+	 * words.length must be exactly ( length + 63 ) / 64. Any bits of the 
+	 * last word beyond length are cleared. As the vector cannot see direct 
+	 * writes to words, wrappedArrayChanged() must be called after them if 
+	 * rank/select or fingerprinting are in use.
+	 * 
+	 * clone() of a wrapped vector makes an immediate deep copy, so that 
+	 * the vector itself never has to detach from words.
+	 */
+	public static BitVector wrap( long [] words, int length ) {
+		if( length < 0 || words.length != wordCount( length ) )
+			throw new IllegalArgumentException();
+		
+		BitVector result = new BitVector( words.length == 0 ? new long [ 0 ][] : new long [][] { words }, 
+			length, words.length <= CHUNK_WORDS ? CHUNK_SHIFT : WHOLE_ARRAY_SHIFT );
+		result.wrapped = true;
+		result.maskTail();
+		return result;
+	}
+	
+	/**
+	 * To be called after the array of a wrapped vector has been written directly.
+	 */
+	public void wrappedArrayChanged() {
+		rankIndex = null;
+		maskTail();
+		wordsChanged();
 	}
+	
+	/**
+	 * Returns a vector of the given length, read from the longs remaining in buffer, 
+	 * which is unchanged. If buffer is backed by an array with exactly the 
+	 * required words, then the vector wraps that array as for wrap( long [], int ). 
+	 */
+	public static BitVector fromLongBuffer( LongBuffer buffer, int length ) {
+		if( length < 0 )
+			throw new IllegalArgumentException();
 
-	private static byte[] reverse(byte[] bytes) {
-	    for(int i = 0; i < bytes.length/2; i++) {
-	        byte temp = bytes[i];
-	        bytes[i] = bytes[bytes.length-i-1];
-	        bytes[bytes.length-i-1] = temp;
-	    }
-	    return bytes;
-	}	
+		final int n = wordCount( length );
+		if( buffer.hasArray() && buffer.remaining() >= n 
+			&& buffer.arrayOffset() + buffer.position() == 0 && buffer.array().length == n )
+			return wrap( buffer.array(), length );
+		
+		BitVector result = new BitVector( length );
+		result.readFrom( buffer.duplicate() );
+		return result;
+	}
+	
+	/**
+	 * Returns a vector of the given length, read from the little-endian bytes 
+	 * remaining in buffer, which is unchanged.
+	 */
+	public static BitVector fromByteBuffer( ByteBuffer buffer, int length ) {
+		BitVector result = new BitVector( length );
+		result.readFrom( buffer.duplicate() );
+		return result;
+	}
+	
+	/**
+	 * Overwrites this vector with the next ( length() + 63 ) / 64 longs of buffer, 
+	 * advancing its position. 
+	 */
+	public void readFrom( LongBuffer buffer ) {
+		if( buffer.remaining() < numWords )
+			throw new IllegalArgumentException();
+
+		prepareToWrite();
+		readWords( buffer, numWords );
+		maskTail();
+		wordsChanged();
+	}
+	
+	/**
+	 * Overwrites this vector with the next ( length() + 7 ) / 8 bytes of buffer, 
+	 * taken as little-endian, advancing its position.
+	 */
+	public void readFrom( ByteBuffer buffer ) {
+		final int numBytes = ( length + 7 ) >>> 3;
+		if( buffer.remaining() < numBytes )
+			throw new IllegalArgumentException();
+
+		prepareToWrite();
+		final int start = buffer.position();
+		final int fullWords = numBytes >>> 3;
+		readWords( buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer(), fullWords );
+		if( fullWords < numWords ) {
+			long word = 0L;
+			for( int k=fullWords << 3; k<numBytes; ++k )
+				word |= ( buffer.get( start + k ) & 0xffL ) << ( ( k & 7 ) << 3 );
+			putWord( fullWords, word );
+		}
+		buffer.position( start + numBytes );
+		maskTail();
+		wordsChanged();
+	}
+
+	/**
+	 * Returns a copy of the words of this vector, as for BitSet.toLongArray(), 
+	 * except that the array always has ( length() + 63 ) / 64 elements.
+	 */
+	public long [] toLongArray() {
+		long [] result = new long [ numWords ];
+		copyWords( 0, result, 0, numWords );
+		return result;
+	}
+	
+	/**
+	 * Copies the ( length() + 63 ) / 64 words of this vector into dest at destPos.
+	 */
+	public void toLongArray( long [] dest, int destPos ) {
+		if( destPos < 0 || destPos > dest.length - numWords )
+			throw new IndexOutOfBoundsException();
+		
+		copyWords( 0, dest, destPos, numWords );
+	}
+	
+	/**
+	 * Puts the ( length() + 63 ) / 64 words of this vector into buffer, 
+	 * advancing its position.
+	 */
+	public void writeTo( LongBuffer buffer ) {
+		if( buffer.remaining() < numWords )
+			throw new BufferOverflowException();
+		
+		writeWords( buffer, numWords );
+	}
+
+	/**
+	 * Puts the ( length() + 7 ) / 8 little-endian bytes of this vector into buffer, 
+	 * advancing its position. 
+	 */
+	public void writeTo( ByteBuffer buffer ) {
+		final int numBytes = ( length + 7 ) >>> 3;
+		if( buffer.remaining() < numBytes )
+			throw new IllegalArgumentException();
+		
+		final int start = buffer.position();
+		final int fullWords = numBytes >>> 3;
+		writeWords( buffer.duplicate().order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer(), fullWords );
+		if( fullWords < numWords ) {
+			final long word = word( fullWords );
+			for( int k=fullWords << 3; k<numBytes; ++k )
+				buffer.put( start + k, (byte)( word >>> ( ( k & 7 ) << 3 ) ) );
+		}
+		buffer.position( start + numBytes );
+	}
+	
+	/**
+	 * Reads the first n words of this vector from buffer.
+	 */
+	private void readWords( LongBuffer buffer, int n ) {
+		for( int c=0; n > 0; ++c ) {
+			final long [] chunk = writableChunk( c );
+			final int k = Math.min( n, chunk.length );
+			buffer.get( chunk, 0, k );
+			n -= k;
+		}
+	}
+
+	/**
+	 * Puts the first n words of this vector into buffer.
+	 */
+	private void writeWords( LongBuffer buffer, int n ) {
+		for( int c=0; n > 0; ++c ) {
+			final int k = Math.min( n, chunks[ c ].length );
+			buffer.put( chunks[ c ], 0, k );
+			n -= k;
+		}
+	}
 	
 	///////////////////////////////	
 		
@@ -93,92 +336,291 @@ public final class BitVector {
      * bits with indices in the range 0 through nbits-1.	
      */
 	public BitVector( int nbits ) {
-		impl = new BitSet( nbits );
-		length = nbits;
+		this( newChunks( nbits ), nbits, CHUNK_SHIFT );
 	}
 
+	/**
+	 * Creates a bit vector of length nbits in which each bit is 
+	 * independently set with probability 0.5. Draws one random long 
+	 * per 64 bits.
+	 */
 	public BitVector( int nbits, Random random ) {
-		impl = new BitSet( nbits );
-		length = nbits;
-		for( int i=0; i<length; ++i )
-			impl.set( i, random.nextBoolean() );
+		this( nbits );
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = chunks[ c ];
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] = random.nextLong();
+		}
+		maskTail();
 	}
 	
 	public BitVector( BitSet x, int fromIndex, int toIndex ) {
-		impl = x.get( fromIndex, toIndex );
-		this.length = toIndex - fromIndex;
+		this( toIndex - fromIndex );
+		
+		long [] source = x.get( fromIndex, toIndex ).toLongArray();
+		for( int i=0; i<source.length; ++i )
+			putWord( i, source[ i ] );
 	}
 
+	private BitVector( long [][] chunks, int length, int chunkShift ) {
+		this.chunks = chunks;
+		this.chunkShift = chunkShift;
+		this.chunkMask = ( 1 << chunkShift ) - 1;
+		this.numWords = wordCount( length );
+		this.length = length;
+	}
+	
 	public BitVector( BitVector rhs ) {
-		impl = (BitSet)rhs.impl.clone();
-		length = rhs.length;
+		this( rhs.length );
+		for( int c=0; c<chunks.length; ++c )
+			rhs.copyWords( c << CHUNK_SHIFT, chunks[ c ], 0, chunks[ c ].length );
+		fingerprinting = rhs.fingerprinting;
+		fingerprint = rhs.fingerprint;
+	}
+	
+	private static long [][] newChunks( int nbits ) {
+		if( nbits < 0 )
+			throw new IllegalArgumentException();
+		
+		final int numWords = wordCount( nbits );
+		long [][] result = new long [ ( numWords + CHUNK_WORDS - 1 ) >>> CHUNK_SHIFT ][];
+		for( int c=0; c<result.length; ++c )
+			result[ c ] = new long [ Math.min( CHUNK_WORDS, numWords - ( c << CHUNK_SHIFT ) ) ];
+		return result;
 	}
 	
 	///////////////////////////////
 	
+	private static int wordIndex( int bitIndex ) {
+		return bitIndex >> ADDRESS_BITS_PER_WORD;
+	}
+	
+	private static int wordCount( int nbits ) {
+		return ( nbits + BITS_PER_WORD - 1 ) >>> ADDRESS_BITS_PER_WORD;
+	}
+
 	/**
-	 * 	Performs a logical AND of this target bit vector with the argument bit vector. 
+	 * Mask selecting the bits of the last word that lie within length.
 	 */
-	public void and( BitVector rhs ) {
+	private long tailMask() {
+		return WORD_MASK >>> -length;
+	}
+	
+	private void maskTail() {
+		if( numWords > 0 && ( word( numWords - 1 ) & ~tailMask() ) != 0L )
+			putWord( numWords - 1, word( numWords - 1 ) & tailMask() );
+	}
+	
+	///////////////////////////////
+	
+	// Word-level access for the other classes of this package.
+	// Writes through setWord keep the tail of the last word clear.
+	
+	int numWords() { return numWords; }
+	
+	long getWord( int wordIndex ) { return word( wordIndex ); }
+	
+	void setWord( int wordIndex, long word ) {
+		if( wordIndex == numWords - 1 )
+			word &= tailMask();
+		
+		writeWord( wordIndex, word );
+	}
+
+	private void writeWord( int wordIndex, long word ) {
+		prepareToWrite();
+		final long [] chunk = writableChunk( wordIndex >>> chunkShift );
+		final int i = wordIndex & chunkMask;
+		if( fingerprinting )
+			fingerprint ^= mix( wordIndex, chunk[ i ] ) ^ mix( wordIndex, word );
+		
+		chunk[ i ] = word;
+	}
+	
+	private long word( int wordIndex ) {
+		return chunks[ wordIndex >>> chunkShift ][ wordIndex & chunkMask ];
+	}
+
+	/**
+	 * Writes a word other than via writeWord, and so between 
+	 * prepareToWrite and wordsChanged.
+	 */
+	private void putWord( int wordIndex, long word ) {
+		writableChunk( wordIndex >>> chunkShift )[ wordIndex & chunkMask ] = word;
+	}
+	
+	/**
+	 * To be called before words are written, other than via writeWord.
+	 */
+	private void prepareToWrite() {
+		rankIndex = null;
+	}
+	
+	/**
+	 * Returns chunk c for writing, first copying it if it is shared.
+	 */
+	private long [] writableChunk( int c ) {
+		final AtomicInteger count = owners == null ? null : owners[ c ];
+		if( count != null ) {
+			if( count.get() > 1 ) {
+				chunks[ c ] = chunks[ c ].clone();
+				count.decrementAndGet();
+			}
+			owners[ c ] = null;
+		}
+		return chunks[ c ];
+	}
+	
+	/**
+	 * The words of rhs, of the same length as this, that correspond to 
+	 * chunks[ c ]. Only a wrapped vector can be chunked differently, 
+	 * in which case the words are copied.
+	 */
+	private long [] alignedChunk( BitVector rhs, int c ) {
+		if( rhs.chunkShift == chunkShift )
+			return rhs.chunks[ c ];
+		
+		long [] result = new long [ chunks[ c ].length ];
+		rhs.copyWords( c << chunkShift, result, 0, result.length );
+		return result;
+	}
+	
+	/**
+	 * Copies n words, starting from word wordIndex, into dest at destPos.
+	 */
+	private void copyWords( int wordIndex, long [] dest, int destPos, int n ) {
+		while( n > 0 ) {
+			final long [] chunk = chunks[ wordIndex >>> chunkShift ];
+			final int offset = wordIndex & chunkMask;
+			final int k = Math.min( n, chunk.length - offset );
+			System.arraycopy( chunk, offset, dest, destPos, k );
+			wordIndex += k;
+			destPos += k;
+			n -= k;
+		}
+	}
+	
+	/**
+	 * To be called after words have been written other than via writeWord.
+	 */
+	private void wordsChanged() {
+		if( fingerprinting )
+			fingerprint = computeFingerprint();
+	}
+	
+	///////////////////////////////
+	
+	private void checkIndex( int bitIndex ) {
+		if( bitIndex < 0 || bitIndex >= length() )
+			throw new IllegalArgumentException();
+	}
+
+	private void checkRange( int fromIndex, int toIndex ) {
+		if( fromIndex < 0 || fromIndex >= length() )
+			throw new IllegalArgumentException();
+		if( toIndex <= 0 || toIndex > length() )
+			throw new IllegalArgumentException();
+	}
+	
+	private void checkLength( BitVector rhs ) {
 		if( length() != rhs.length() )
 			throw new IllegalArgumentException();
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * 	Performs a logical AND of this target bit vector with the argument bit vector. 
+	 */
+	public void and( BitVector rhs ) {
+		checkLength( rhs );
 		
-		impl.and( rhs.impl );
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] &= w[ i ];
+		}
+		wordsChanged();
 	}
 
 	/**
 	 * 	Clears all of the bits in this BitVector whose corresponding bit is rhs in the specified BitVector. 
 	 */
 	public void andNot( BitVector rhs ) {
-		if( length() != rhs.length() )
-			throw new IllegalArgumentException();
+		checkLength( rhs );
 		
-		impl.andNot( rhs.impl );
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] &= ~w[ i ];
+		}
+		wordsChanged();
 	}
 	
 	/**
 	 * Returns the number of bits set to true in this BitVector.
 	 */
-	public int cardinality() { return impl.cardinality(); }
-	
+	public int cardinality() {
+		int result = 0;
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = chunks[ c ];
+			for( int i=0; i<chunk.length; ++i )
+				result += Long.bitCount( chunk[ i ] );
+		}
+		return result;
+	}
 
 	/**
 	 * Sets all of the bits in this BitVector to false.
 	 */ 
-	public void clear() { impl.clear(); }
+	public void clear() {
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c )
+			Arrays.fill( writableChunk( c ), 0L );
+		wordsChanged();
+	}
 	
 	/**
 	 * Sets the bit specified by the index to false.
 	 */
-	public void clear(int bitIndex) { impl.clear(bitIndex); }
+	public void clear(int bitIndex) {
+		checkIndex( bitIndex );
+		
+		final int u = wordIndex( bitIndex );
+		writeWord( u, word( u ) & ~( 1L << bitIndex ) );
+	}
     
 	/**
 	 * Sets the bits from the specified fromIndex(inclusive) to the specified toIndex(exclusive) to false. 
 	 */
-	public void clear(int fromIndex, int toIndex) { impl.clear(fromIndex, toIndex); }
+	public void clear(int fromIndex, int toIndex) { set( fromIndex, toIndex, false ); }
 	
 	///////////////////////////////
  
 	private static final class SparseIterator 
-	implements Iterator< Integer > {
-	    private final BitSet bitset_;
+	implements PrimitiveIterator.OfInt {
+	    private final BitVector bits_;
 	    private int index_ = -1;
 
 	    ///////////////////////////////
 	    
-	    public SparseIterator( BitSet bitset ) {
-	        bitset_ = bitset;
-	        index_ = bitset.nextSetBit( 0 ); 
+	    public SparseIterator( BitVector bits ) {
+	        bits_ = bits;
+	        index_ = bits.nextSetBitUnchecked( 0 ); 
 	    }
 
 	    public boolean hasNext() { return index_ != -1; }
 
-	    public Integer next() {
+	    public int nextInt() {
 	        if( !hasNext() )
 	            throw new NoSuchElementException();
 	        
 	        int result = index_;
-	        index_ = bitset_.nextSetBit( ++index_ );
+	        index_ = bits_.nextSetBitUnchecked( ++index_ );
 	        return result;
 	    }
 
@@ -187,84 +629,562 @@ public final class BitVector {
 	    }
 
 		@Override
-		public void forEachRemaining(Consumer<? super Integer> action) {
+		public void forEachRemaining(IntConsumer action) {
 			while( hasNext() )
-				action.accept(next());	    
+				action.accept(nextInt());	    
 		}
 	}
 	
 	///////////////////////////////
 	
-	public Iterator< Integer > sparseIterator() {
-		return new SparseIterator( impl );
+	/**
+	 * Spliterator over the indices of the set (or clear) bits lying in 
+	 * the word range [index_,fence_). Splits on word boundaries, so that 
+	 * each half can be traversed independently without any coordination.
+	 * Traversal reads the live words: the vector should not be modified 
+	 * while a traversal is in progress. 
+	 */
+	
+	private final class WordSpliterator 
+	implements Spliterator.OfInt {
+		private final boolean clearBits_;
+		private final int fence_;
+		private int index_;
+		private long word_;
+		
+	    ///////////////////////////////
+		
+		WordSpliterator( boolean clearBits, int origin, int fence ) {
+			this( clearBits, origin, fence, origin < fence ? load( clearBits, origin ) : 0L );
+		}
+
+		private WordSpliterator( boolean clearBits, int origin, int fence, long word ) {
+			clearBits_ = clearBits;
+			index_ = origin;
+			fence_ = fence;
+			word_ = word;
+		}
+		
+		@Override
+		public boolean tryAdvance( IntConsumer action ) {
+			while( word_ == 0L ) {
+				if( index_ + 1 >= fence_ ) {
+					index_ = fence_;
+					return false;
+				}
+				word_ = load( clearBits_, ++index_ );
+			}
+			
+			final int bit = Long.numberOfTrailingZeros( word_ );
+			word_ &= word_ - 1;
+			action.accept( ( index_ << ADDRESS_BITS_PER_WORD ) + bit );
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining( IntConsumer action ) {
+			if( index_ >= fence_ )
+				return;
+			
+			long word = word_;
+			for( int i=index_; ; ) {
+				final int base = i << ADDRESS_BITS_PER_WORD;
+				while( word != 0L ) {
+					action.accept( base + Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+				if( ++i >= fence_ )
+					break;
+				word = load( clearBits_, i );
+			}
+			index_ = fence_;
+			word_ = 0L;
+		}
+		
+		@Override
+		public Spliterator.OfInt trySplit() {
+			final int mid = ( index_ + fence_ ) >>> 1;
+			if( mid <= index_ )
+				return null;
+			
+			Spliterator.OfInt prefix = new WordSpliterator( clearBits_, index_, mid, word_ );
+			index_ = mid;
+			word_ = load( clearBits_, mid );
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			if( index_ >= fence_ )
+				return 0L;
+			
+			return Long.bitCount( word_ ) + (long)( fence_ - index_ - 1 ) * BITS_PER_WORD;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED | Spliterator.NONNULL;
+		}
+		
+		@Override
+		public Comparator< ? super Integer > getComparator() {
+			return null;
+		}
+	}
+
+	private long load( boolean complement, int wordIndex ) {
+		long result = complement ? ~word( wordIndex ) : word( wordIndex );
+		if( wordIndex == numWords - 1 )
+			result &= tailMask();
+		return result;
 	}
 	
 	///////////////////////////////
 	
-	public boolean invariant() {
-		return impl.length() <= length() && impl.size() >= length();
+	public PrimitiveIterator.OfInt sparseIterator() {
+		return new SparseIterator( this );
 	}
 	
-	///////////////////////////////	
-	
-	public BitVector clone() { return new BitVector( this ); } 
-    
-	public boolean equals( Object obj ) {
-		if( !( obj instanceof BitVector ) )
-			return false;
-		
-		BitVector rhs = (BitVector)obj;
-		return length == rhs.length && impl.equals( rhs.impl );
-	}
-
-    /**
-     * Sets the bit at the specified index to to the complement of its current value.
-     */
-	public void flip( int bitIndex ) {
-		if( bitIndex < 0 || bitIndex >= length() )
-			throw new IllegalArgumentException();
-		
-		impl.flip(bitIndex);
+	/**
+	 * Applies action to the index of each set bit, in ascending order.
+	 */
+	public void forEachSetBit( IntConsumer action ) {
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = chunks[ c ];
+			for( int i=0; i<chunk.length; ++i ) {
+				long word = chunk[ i ];
+				final int base = ( ( c << chunkShift ) + i ) << ADDRESS_BITS_PER_WORD;
+				while( word != 0L ) {
+					action.accept( base + Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+			}
+		}
 	}
 
 	/**
-	 * Sets each bit from the specified fromIndex(inclusive) to the specified toIndex(exclusive) to the complement of its current value.
+	 * Returns the indices of the set bits, in ascending order.
+	 * The stream splits on 64-bit word boundaries, and so may be run in parallel.
 	 */
-	public void flip(int fromIndex, int toIndex) {
-		if( fromIndex < 0 || fromIndex >= length() )
-			throw new IllegalArgumentException();
-		if( toIndex <= 0 || toIndex > length() )
-			throw new IllegalArgumentException();
-		
-		impl.flip(fromIndex, toIndex);
+	public IntStream setBits() {
+		return StreamSupport.intStream( new WordSpliterator( false, 0, numWords ), false );
 	}
-    
+
 	/**
-	 * Returns the value of the bit with the specified index. 
+	 * Returns the indices of the clear bits, in ascending order.
+	 * The stream splits on 64-bit word boundaries, and so may be run in parallel.
 	 */
-	public boolean get(int bitIndex) {
-		if( bitIndex < 0 || bitIndex >= length() )
+	public IntStream clearBits() {
+		return StreamSupport.intStream( new WordSpliterator( true, 0, numWords ), false );
+	}
+	
+	///////////////////////////////
+	
+	public boolean invariant() {
+		int total = 0;
+		for( int c=0; c<chunks.length; ++c ) {
+			if( c < chunks.length - 1 && chunks[ c ].length != 1 << chunkShift )
+				return false;
+			total += chunks[ c ].length;
+		}
+		return total == numWords && numWords == wordCount( length ) 
+			&& ( numWords == 0 || ( word( numWords - 1 ) & ~tailMask() ) == 0L );
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * Cumulative counts of set bits at every BLOCK_WORDS words, and the 
+	 * block containing every SAMPLE_RATE-th set bit, so that select need only
+	 * search between the blocks of the neighbouring samples.
+	 *  
+	 * @inproceedings{Vigna:2008:BIR,
+	 *   author = {Vigna, Sebastiano},
+	 *   title = {Broadword Implementation of Rank/Select Queries},
+	 *   booktitle = {Experimental Algorithms (WEA 2008)},
+	 *   year = {2008},
+	 *   pages = {154--168},
+	 * }
+	 */
+	private static final class RankIndex {
+		static final int BLOCK_WORDS = 8;
+		static final int BLOCK_BITS = BLOCK_WORDS * BITS_PER_WORD;
+		static final int SAMPLE_RATE = BLOCK_BITS;
+		
+		/** blockCounts[ b ] is the number of set bits before block b */
+		final int [] blockCounts;
+		/** samples[ j ] is the block containing set bit j * SAMPLE_RATE */
+		final int [] samples;
+		
+		RankIndex( BitVector x ) {
+			final int numBlocks = ( x.numWords + BLOCK_WORDS - 1 ) / BLOCK_WORDS;
+			blockCounts = new int [ numBlocks + 1 ];
+			int count = 0;
+			for( int b=0; b<numBlocks; ++b ) {
+				blockCounts[ b ] = count;
+				for( int i = b * BLOCK_WORDS, end = Math.min( i + BLOCK_WORDS, x.numWords ); i<end; ++i )
+					count += Long.bitCount( x.word( i ) );
+			}
+			blockCounts[ numBlocks ] = count;
+			
+			samples = new int [ ( count + SAMPLE_RATE - 1 ) / SAMPLE_RATE ];
+			for( int b=0, j=0; b<numBlocks; ++b )
+				for( ; j < samples.length && j * SAMPLE_RATE < blockCounts[ b + 1 ]; ++j )
+					samples[ j ] = b;
+		}
+	}
+	
+	private RankIndex rankIndex() {
+		if( rankIndex == null )
+			rankIndex = new RankIndex( this );
+		return rankIndex;
+	}
+	
+	/**
+	 * Returns the number of set bits with index less than bitIndex, in constant time
+	 * once the rank index (of about 1/16 of the size of this vector) has been built.
+	 * The index is built on the first call to rank or select after a modification.
+	 */
+	public int rank( int bitIndex ) {
+		if( bitIndex < 0 || bitIndex > length() )
 			throw new IllegalArgumentException();
 		
-		return impl.get( bitIndex );
+		final RankIndex index = rankIndex();
+		final int u = wordIndex( bitIndex );
+		int result = index.blockCounts[ u / RankIndex.BLOCK_WORDS ];
+		for( int i = u - u % RankIndex.BLOCK_WORDS; i < u; ++i )
+			result += Long.bitCount( word( i ) );
+		if( ( bitIndex & ( BITS_PER_WORD - 1 ) ) != 0 )
+			result += Long.bitCount( word( u ) & ( WORD_MASK >>> -bitIndex ) );
+		return result;
+	}
+
+	/**
+	 * Returns the index of the set bit of rank k, i.e. the (k+1)th set bit.
+	 * Takes near-constant time once the rank index has been built.
+	 */
+	public int select( int k ) {
+		final RankIndex index = rankIndex();
+		final int [] counts = index.blockCounts;
+		if( k < 0 || k >= counts[ counts.length - 1 ] )
+			throw new IllegalArgumentException();
+		
+		final int sample = k / RankIndex.SAMPLE_RATE;
+		int lo = index.samples[ sample ];
+		int hi = sample + 1 < index.samples.length ? index.samples[ sample + 1 ] : counts.length - 2;
+		// find the last block b in [lo,hi] with counts[ b ] <= k:
+		while( lo < hi ) {
+			final int mid = ( lo + hi + 1 ) >>> 1;
+			if( counts[ mid ] <= k )
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		
+		int remaining = k - counts[ lo ];
+		for( int i = lo * RankIndex.BLOCK_WORDS; ; ++i ) {
+			final long word = word( i );
+			final int c = Long.bitCount( word );
+			if( remaining < c )
+				return ( i << ADDRESS_BITS_PER_WORD ) + selectInWord( word, remaining );
+			remaining -= c;
+		}
+	}
+
+	/**
+	 * Returns the index of the clear bit of rank k, i.e. the (k+1)th clear bit.
+	 * Takes logarithmic time once the rank index has been built.
+	 */
+	public int selectClear( int k ) {
+		final RankIndex index = rankIndex();
+		final int [] counts = index.blockCounts;
+		if( k < 0 || k >= length - counts[ counts.length - 1 ] )
+			throw new IllegalArgumentException();
+		
+		// find the last block b with ( clear bits before b ) <= k:
+		int lo = 0;
+		int hi = counts.length - 2;
+		while( lo < hi ) {
+			final int mid = ( lo + hi + 1 ) >>> 1;
+			if( mid * RankIndex.BLOCK_BITS - counts[ mid ] <= k )
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		
+		int remaining = k - ( lo * RankIndex.BLOCK_BITS - counts[ lo ] );
+		for( int i = lo * RankIndex.BLOCK_WORDS; ; ++i ) {
+			final long word = ~word( i ) & ( i == numWords - 1 ? tailMask() : WORD_MASK );
+			final int c = Long.bitCount( word );
+			if( remaining < c )
+				return ( i << ADDRESS_BITS_PER_WORD ) + selectInWord( word, remaining );
+			remaining -= c;
+		}
+	}
+	
+	/**
+	 * @return the index of a set bit chosen uniformly at random, or -1 if there are none
+	 */
+	public int randomSetBit( Random random ) {
+		final int [] counts = rankIndex().blockCounts;
+		final int numSet = counts[ counts.length - 1 ];
+		return numSet == 0 ? -1 : select( random.nextInt( numSet ) );
+	}
+
+	/**
+	 * @return the index of a clear bit chosen uniformly at random, or -1 if there are none
+	 */
+	public int randomClearBit( Random random ) {
+		final int [] counts = rankIndex().blockCounts;
+		final int numClear = length - counts[ counts.length - 1 ];
+		return numClear == 0 ? -1 : selectClear( random.nextInt( numClear ) );
+	}
+	
+	/**
+	 * @return the position of the set bit of rank r in word
+	 */
+	private static int selectInWord( long word, int r ) {
+		int base = 0;
+		for( int c; r >= ( c = Long.bitCount( word & 0xFFL ) ); r -= c ) {
+			word >>>= 8;
+			base += 8;
+		}
+		for( ; r > 0; --r )
+			word &= word - 1;
+		return base + Long.numberOfTrailingZeros( word );
+	}
+	
+	///////////////////////////////	
+	
+	/**
+	 * Returns a copy-on-write copy of this bit vector: the copy initially 
+	 * shares this vector's chunks of 1024 words, and whichever vector 
+	 * first writes a shared chunk copies just that chunk. Cloning takes 
+	 * time proportional to the number of chunks, an offspring that differs 
+	 * from its parent in a few bits copies only the chunks containing them, 
+	 * and a copy that is never modified, e.g. an elite, copies nothing. 
+	 * Operations on the whole vector, such as not or xor, copy every 
+	 * shared chunk. Use the copy constructor for an immediate deep copy; 
+	 * a wrapped vector is always deep-copied.
+	 */
+	public BitVector clone() {
+		if( wrapped )
+			return new BitVector( this );
+		
+		BitVector result = new BitVector( chunks.clone(), length, chunkShift );
+		result.owners = share();
+		result.rankIndex = rankIndex;
+		result.fingerprinting = fingerprinting;
+		result.fingerprint = fingerprint;
+		return result;
+	} 
+	
+	/**
+	 * Counts one more sharer of every chunk, and returns the counts for it.
+	 */
+	private AtomicInteger [] share() {
+		if( owners == null )
+			owners = new AtomicInteger [ chunks.length ];
+		for( int c=0; c<chunks.length; ++c ) {
+			if( owners[ c ] == null )
+				owners[ c ] = new AtomicInteger( 1 );
+			owners[ c ].incrementAndGet();
+		}
+		return owners.clone();
 	}
     
-	public int hashCode() { return impl.hashCode();	}
+	public boolean equals( Object obj ) {
+		if( !( obj instanceof BitVector ) )
+			return false;
+		
+		BitVector rhs = (BitVector)obj;
+		if( length != rhs.length )
+			return false;
+		
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			if( w != chunks[ c ] && !Arrays.equals( chunks[ c ], w ) )
+				return false;
+		}
+		return true;
+	}
+
+    /**
+     * Sets the bit at the specified index to to the complement of its current value.
+     */
+	public void flip( int bitIndex ) {
+		checkIndex( bitIndex );
+		
+		final int u = wordIndex( bitIndex );
+		writeWord( u, word( u ) ^ ( 1L << bitIndex ) );
+	}
+
+	/**
+	 * Sets each bit from the specified fromIndex(inclusive) to the specified toIndex(exclusive) to the complement of its current value.
+	 */
+	public void flip(int fromIndex, int toIndex) {
+		checkRange( fromIndex, toIndex );
+		if( fromIndex >= toIndex )
+			return;
+		
+		prepareToWrite();
+		final int startWordIndex = wordIndex( fromIndex );
+		final int endWordIndex = wordIndex( toIndex - 1 );
+		final long firstWordMask = WORD_MASK << fromIndex;
+		final long lastWordMask  = WORD_MASK >>> -toIndex;
+		
+		if( startWordIndex == endWordIndex ) {
+			putWord( startWordIndex, word( startWordIndex ) ^ ( firstWordMask & lastWordMask ) );
+		} 
+		else {
+			putWord( startWordIndex, word( startWordIndex ) ^ firstWordMask );
+			for( int i = startWordIndex+1; i < endWordIndex; ++i )
+				putWord( i, ~word( i ) );
+			putWord( endWordIndex, word( endWordIndex ) ^ lastWordMask );
+		}
+		wordsChanged();
+	}
+    
+	/**
+	 * Flips each bit independently with the specified probability,
+	 * as in the standard bit-flip mutation of genetic algorithms. 
+	 * Rather than drawing a random number for every bit, the gap to the 
+	 * next flipped bit is drawn from the geometric distribution, 
+	 * so the expected cost is proportional to the number of bits flipped.
+	 * @return the number of bits flipped
+	 * 
+	 * @book{Devroye:1986:NRV,
+	 *   author = {Devroye, Luc},
+	 *   title = {Non-Uniform Random Variate Generation},
+	 *   year = {1986},
+	 *   publisher = {Springer-Verlag},
+	 * }
+	 */
+	public int randomFlip( double probability, Random random ) {
+		if( !( probability >= 0.0 && probability <= 1.0 ) )
+			throw new IllegalArgumentException();
+		
+		if( probability == 0.0 || length == 0 )
+			return 0;
+		if( probability == 1.0 ) {
+			not();
+			return length;
+		}
+		
+		final double logComplement = Math.log1p( -probability );
+		int result = 0;
+		for( long i = -1; ; ++result ) {
+			final double gap = Math.floor( Math.log( 1.0 - random.nextDouble() ) / logComplement );
+			i += 1 + (long)gap;
+			if( i >= length || gap >= length )
+				break;
+			
+			final int u = (int)( i >> ADDRESS_BITS_PER_WORD );
+			writeWord( u, word( u ) ^ ( 1L << i ) );
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the value of the bit with the specified index. 
+	 */
+	public boolean get(int bitIndex) {
+		checkIndex( bitIndex );
+		
+		return ( word( wordIndex( bitIndex ) ) & ( 1L << bitIndex ) ) != 0L;
+	}
+    
+	/**
+	 * Derived from fingerprint64(), and so constant-time when fingerprinting is enabled.
+	 */
+	public int hashCode() {
+		final long h = fingerprint64(); 
+		return (int)( ( h >> 32 ) ^ h );
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * Maintains the value of fingerprint64() from now on, so that it 
+	 * (and hashCode) can be read in constant time. The maintenance costs 
+	 * constant time per single-bit update, and time linear in the number of 
+	 * words per bulk operation. Fingerprinting is propagated to copies.  
+	 */
+	public void enableFingerprint() {
+		fingerprint = computeFingerprint();
+		fingerprinting = true;
+	}
+	
+	public void disableFingerprint() {
+		fingerprinting = false;
+	}
+	
+	public boolean isFingerprintEnabled() { return fingerprinting; }
+	
+	/**
+	 * Returns a 64-bit hash of this bit vector, suitable as a compact 
+	 * key for very large tables. Equal vectors have equal fingerprints,  
+	 * whether or not fingerprinting is enabled on either.
+	 * 
+	 * This is a Zobrist-style hash, taken at word rather than bit 
+	 * granularity: the XOR over words of a strong mix of each word's 
+	 * index and value. Replacing one word therefore changes the hash 
+	 * by the XOR of two mixes.
+	 * 
+	 * @article{Zobrist:1970:NHM,
+	 *   author = {Zobrist, Albert L.},
+	 *   title = {A New Hashing Method with Application for Game Playing},
+	 *   journal = {Technical Report 88, University of Wisconsin},
+	 *   year = {1970},
+	 * }
+	 */
+	public long fingerprint64() {
+		return ( fingerprinting ? fingerprint : computeFingerprint() ) ^ mix( -1, length ); 
+	}
+	
+	private long computeFingerprint() {
+		long result = 0L;
+		for( int i=0; i<numWords; ++i )
+			result ^= mix( i, word( i ) );
+		
+		return result;
+	}
+	
+	/**
+	 * The finalizer of SplitMix64, applied to word offset by a multiple of the golden gamma.
+	 */
+	private static long mix( int wordIndex, long word ) {
+		return SplitMix64.mix( word + ( wordIndex + 1L ) * SplitMix64.GOLDEN_GAMMA );
+	}
 
     /**
      * Returns true if the specified BitVector has any bits rhs to true that are also rhs to true in this BitVector.
      */
 	public boolean intersects(BitVector rhs) {
-		if( length() != rhs.length() )
-			throw new IllegalArgumentException();
+		checkLength( rhs );
 		
-		return impl.intersects( rhs.impl );
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = chunks[ c ];
+			final long [] w = alignedChunk( rhs, c );
+			for( int i=0; i<chunk.length; ++i )
+				if( ( chunk[ i ] & w[ i ] ) != 0L )
+					return true;
+		}
+		return false;
 	}
  
 	/**
 	 * Returns true if this BitVector contains no bits that are rhs to true.
 	 */
-	public boolean isEmpty() { return impl.isEmpty(); }
+	public boolean isEmpty() {
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = chunks[ c ];
+			for( int i=0; i<chunk.length; ++i )
+				if( chunk[ i ] != 0L )
+					return false;
+		}
+		return true;
+	}
     
 	/**
 	 * Returns the length of this BitVector.
@@ -277,96 +1197,344 @@ public final class BitVector {
 	 * Returns the index of the first bit that is set to false that occurs on or after the specified starting index. 
 	 */
 	public int nextClearBit(int fromIndex) {
-		if( fromIndex < 0 || fromIndex >= length() )
-			throw new IllegalArgumentException();
+		checkIndex( fromIndex );
 		
-		int result = impl.nextClearBit( fromIndex );
-		if( result == length )
-			result = -1;
-		return result;
+		int u = wordIndex( fromIndex );
+		long word = ~word( u ) & ( WORD_MASK << fromIndex );
+		for( ; ; ) {
+			if( word != 0L ) {
+				final int result = ( u * BITS_PER_WORD ) + Long.numberOfTrailingZeros( word );
+				return result < length ? result : -1;
+			}
+			if( ++u == numWords )
+				return -1;
+			word = ~word( u );
+		}
 	}
  
 	/**
 	 * Returns the index of the first bit that is set to true that occurs on or after the specified starting index. 
 	 */
 	public int nextSetBit(int fromIndex) {
-		if( fromIndex < 0 || fromIndex >= length() )
-			throw new IllegalArgumentException();
+		checkIndex( fromIndex );
 		
-		return impl.nextSetBit( fromIndex );		
+		return nextSetBitUnchecked( fromIndex );		
 	}
 
+	private int nextSetBitUnchecked( int fromIndex ) {
+		if( fromIndex >= length )
+			return -1;
+		
+		int u = wordIndex( fromIndex );
+		long word = word( u ) & ( WORD_MASK << fromIndex );
+		for( ; ; ) {
+			if( word != 0L )
+				return ( u * BITS_PER_WORD ) + Long.numberOfTrailingZeros( word );
+			if( ++u == numWords )
+				return -1;
+			word = word( u );
+		}
+	}
+	
 	/**
 	 * 	Performs a logical NOT of this bit vector 
 	 */
 	public void not() {
-		BitSet allOnes = new BitSet( length );
-		allOnes.flip( 0, length );
-		impl.xor( allOnes );
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] = ~chunk[ i ];
+		}
+		maskTail();
+		wordsChanged();
 	}
 	
 	/**
 	 * Performs a logical OR of this bit vector with the bit vector argument. 
 	 */
 	public void or(BitVector rhs) {
-		if( length() != rhs.length() )
-			throw new IllegalArgumentException();
+		checkLength( rhs );
 		
-		impl.or( rhs.impl );
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] |= w[ i ];
+		}
+		wordsChanged();
 	}
     
 	/**
 	 * Sets the bit at the specified index.
 	 */
 	public void set( int bitIndex )	{
-		if( bitIndex < 0 || bitIndex >= length() )
-			throw new IllegalArgumentException();
+		checkIndex( bitIndex );
 
-		impl.set( bitIndex );
+		final int u = wordIndex( bitIndex );
+		writeWord( u, word( u ) | ( 1L << bitIndex ) );
 	}
     
 	/**
 	 * Sets the bit at the specified index to the specified value. 
 	 */
 	public void set(int bitIndex, boolean value) {
-		if( bitIndex < 0 || bitIndex >= length() )
-			throw new IllegalArgumentException();
-
-		impl.set( bitIndex, value );
+		if( value )
+			set( bitIndex );
+		else
+			clear( bitIndex );
 	}
 
 	/**
      * Sets the bits from the specified fromIndex(inclusive) to the specified toIndex(exclusive) to true.
      */
 	public void set(int fromIndex, int toIndex)	{
-		if( fromIndex < 0 || fromIndex >= length() )
-			throw new IllegalArgumentException();
-		if( toIndex <= 0 || toIndex > length() )
-			throw new IllegalArgumentException();
-
-		impl.set( fromIndex, toIndex );
+		set( fromIndex, toIndex, true );
 	}
 
 	/**
 	 * Sets the bits from the specified fromIndex(inclusive) to the specified toIndex(exclusive) to the specified value. 
 	 */
 	public void set(int fromIndex, int toIndex, boolean value) {
-		if( fromIndex < 0 || fromIndex >= length() )
+		checkRange( fromIndex, toIndex );
+		if( fromIndex >= toIndex )
+			return;
+		
+		prepareToWrite();
+		final int startWordIndex = wordIndex( fromIndex );
+		final int endWordIndex = wordIndex( toIndex - 1 );
+		final long firstWordMask = WORD_MASK << fromIndex;
+		final long lastWordMask  = WORD_MASK >>> -toIndex;
+		final long fill = value ? WORD_MASK : 0L;
+		
+		if( startWordIndex == endWordIndex ) {
+			final long mask = firstWordMask & lastWordMask;
+			putWord( startWordIndex, ( word( startWordIndex ) & ~mask ) | ( fill & mask ) );
+		} 
+		else {
+			putWord( startWordIndex, ( word( startWordIndex ) & ~firstWordMask ) | ( fill & firstWordMask ) );
+			for( int i = startWordIndex+1; i < endWordIndex; ++i )
+				putWord( i, fill );
+			putWord( endWordIndex, ( word( endWordIndex ) & ~lastWordMask ) | ( fill & lastWordMask ) );
+		}
+		wordsChanged();
+	}
+
+	public BitVector subVector( int fromIndex, int toIndex ) {
+		if( fromIndex < 0 || toIndex > length() || fromIndex > toIndex )
 			throw new IllegalArgumentException();
-		if( toIndex <= 0 || toIndex > length() )
+		
+		BitVector result = new BitVector( toIndex - fromIndex );
+		final int shift = fromIndex & ( BITS_PER_WORD - 1 );
+		final int offset = wordIndex( fromIndex );
+		for( int i=0; i<result.numWords; ++i ) {
+			long word = word( offset + i ) >>> shift;
+			if( shift != 0 && offset + i + 1 < numWords )
+				word |= word( offset + i + 1 ) << -shift;
+			result.putWord( i, word );
+		}
+		result.maskTail();
+		return result;
+	}
+	
+	/**
+	 * Returns a read-only view of the bits [fromIndex, toIndex), without copying.
+	 */
+	public BitVectorSlice slice( int fromIndex, int toIndex ) {
+		return new BitVectorSlice( this, fromIndex, toIndex );
+	}
+	
+	/**
+	 * Returns the concatenation of the parts, with the first part lowest, 
+	 * i.e. occupying the indices [0, parts[ 0 ].length()).
+	 */
+	public static BitVector concat( BitVectorSlice ... parts ) {
+		long total = 0;
+		for( BitVectorSlice part : parts )
+			total += part.length();
+		if( total > Integer.MAX_VALUE )
 			throw new IllegalArgumentException();
+		
+		BitVector result = new BitVector( (int)total );
+		int offset = 0;
+		for( BitVectorSlice part : parts ) {
+			for( int i=0; i<part.numWords(); ++i )
+				result.orWordAt( offset + ( i << ADDRESS_BITS_PER_WORD ), part.getWord( i ) );
+			offset += part.length();
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the concatenation of the parts, with the first part lowest.
+	 */
+	public static BitVector concat( BitVector ... parts ) {
+		BitVectorSlice [] slices = new BitVectorSlice[ parts.length ];
+		for( int i=0; i<parts.length; ++i )
+			slices[ i ] = parts[ i ].slice( 0, parts[ i ].length() );
+		
+		return concat( slices );
+	}
+	
+	/**
+	 * For building a new vector: ORs word into bits [bitIndex, bitIndex + 64).
+	 */
+	private void orWordAt( int bitIndex, long word ) {
+		final int u = wordIndex( bitIndex );
+		final int shift = bitIndex & ( BITS_PER_WORD - 1 );
+		putWord( u, word( u ) | word << shift );
+		if( shift != 0 && u + 1 < numWords )
+			putWord( u + 1, word( u + 1 ) | word >>> -shift );
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * Moves each bit up by distance places, so that bit i becomes bit i + distance.
+	 * Bits moved beyond length are lost and the vacated low bits are cleared. 
+	 * As toString() prints the highest index first, this is a left shift.
+	 */
+	public void shiftLeft( int distance ) {
+		if( distance < 0 )
+			throw new IllegalArgumentException();
+		
+		prepareToWrite();
+		shiftUp( distance );
+		maskTail();
+		wordsChanged();
+	}
+
+	/**
+	 * Moves each bit down by distance places, so that bit i becomes bit i - distance.
+	 * Bits moved below 0 are lost and the vacated high bits are cleared. 
+	 */
+	public void shiftRight( int distance ) {
+		if( distance < 0 )
+			throw new IllegalArgumentException();
+		
+		prepareToWrite();
+		shiftDown( distance );
+		wordsChanged();
+	}
+	
+	/**
+	 * Rotates so that bit i becomes bit (i + distance) mod length. 
+	 * A negative distance rotates the other way. Done in place, 
+	 * without allocating, by three reversals: of the whole vector, 
+	 * then of the bits below distance and of those above.
+	 */
+	public void rotate( int distance ) {
+		if( length == 0 )
+			return;
+		
+		distance %= length;
+		if( distance < 0 )
+			distance += length;
+		if( distance == 0 )
+			return;
+		
+		prepareToWrite();
+		reverse( 0, length );
+		reverse( 0, distance );
+		reverse( distance, length );
+		wordsChanged();
+	}
+	
+	/**
+	 * Reverses the bits [fromIndex, toIndex) in place, by exchanging 
+	 * reversed 64-bit fields from either end. 
+	 */
+	private void reverse( int fromIndex, int toIndex ) {
+		int lo = fromIndex;
+		int hi = toIndex;
+		for( ; hi - lo >= 2 * BITS_PER_WORD; lo += BITS_PER_WORD, hi -= BITS_PER_WORD ) {
+			final long low = getBits( lo, BITS_PER_WORD );
+			final long high = getBits( hi - BITS_PER_WORD, BITS_PER_WORD );
+			putBits( lo, BITS_PER_WORD, Long.reverse( high ) );
+			putBits( hi - BITS_PER_WORD, BITS_PER_WORD, Long.reverse( low ) );
+		}
+		
+		final int n = hi - lo;
+		if( n > BITS_PER_WORD ) {
+			final int m = n - BITS_PER_WORD;
+			final long low = getBits( lo, BITS_PER_WORD );
+			final long high = getBits( lo + BITS_PER_WORD, m );
+			putBits( lo, m, Long.reverse( high ) >>> -m );
+			putBits( lo + m, BITS_PER_WORD, Long.reverse( low ) );
+		}
+		else if( n > 1 )
+			putBits( lo, n, Long.reverse( getBits( lo, n ) ) >>> -n );
+	}
+	
+	/**
+	 * The numBits (from 1 to 64) bits starting at bitIndex, as the low bits of the result.
+	 */
+	private long getBits( int bitIndex, int numBits ) {
+		final int u = wordIndex( bitIndex );
+		final int shift = bitIndex & ( BITS_PER_WORD - 1 );
+		long result = word( u ) >>> shift;
+		if( shift != 0 && shift + numBits > BITS_PER_WORD )
+			result |= word( u + 1 ) << -shift;
+		return result & ( WORD_MASK >>> -numBits );
+	}
 
-		impl.set( fromIndex, toIndex, value );
+	/**
+	 * Replaces the numBits (from 1 to 64) bits starting at bitIndex with the low bits of value.
+	 */
+	private void putBits( int bitIndex, int numBits, long value ) {
+		final long mask = WORD_MASK >>> -numBits;
+		final int u = wordIndex( bitIndex );
+		final int shift = bitIndex & ( BITS_PER_WORD - 1 );
+		value &= mask;
+		putWord( u, ( word( u ) & ~( mask << shift ) ) | ( value << shift ) );
+		if( shift != 0 && shift + numBits > BITS_PER_WORD )
+			putWord( u + 1, ( word( u + 1 ) & ~( mask >>> -shift ) ) | ( value >>> -shift ) );
+	}
+	
+	/**
+	 * Reverses the order of the bits, so that bit i becomes bit length - 1 - i.
+	 */
+	public void reverse() {
+		prepareToWrite();
+		for( int i=0, j=numWords - 1; i<=j; ++i, --j ) {
+			final long word = word( i );
+			putWord( i, Long.reverse( word( j ) ) );
+			putWord( j, Long.reverse( word ) );
+		}
+		// the clear tail is now at the bottom:
+		shiftDown( -length & ( BITS_PER_WORD - 1 ) );
+		wordsChanged();
+	}
+	
+	private void shiftUp( int distance ) {
+		final int wordShift = distance >>> ADDRESS_BITS_PER_WORD;
+		final int bitShift = distance & ( BITS_PER_WORD - 1 );
+		for( int i=numWords - 1; i>=0; --i ) {
+			final int j = i - wordShift;
+			long word = j >= 0 ? word( j ) << bitShift : 0L;
+			if( bitShift != 0 && j > 0 )
+				word |= word( j - 1 ) >>> -bitShift;
+			putWord( i, word );
+		}
 	}
 
-	public BitVector subVector( int fromIndex, int toIndex ) {
-		return new BitVector( impl, fromIndex, toIndex );
+	private void shiftDown( int distance ) {
+		final int wordShift = distance >>> ADDRESS_BITS_PER_WORD;
+		final int bitShift = distance & ( BITS_PER_WORD - 1 );
+		for( int i=0; i<numWords; ++i ) {
+			final int j = i + wordShift;
+			long word = j < numWords ? word( j ) >>> bitShift : 0L;
+			if( bitShift != 0 && j + 1 < numWords )
+				word |= word( j + 1 ) << -bitShift;
+			putWord( i, word );
+		}
 	}
 	
 	public String toString() {
-		StringBuffer result = new StringBuffer();
-		for( int i=0; i<length(); ++i )
-			result.append( impl.get( length() - i - 1 ) ? "1" : "0" );
+		StringBuilder result = new StringBuilder( length() );
+		for( int i=length() - 1; i>=0; --i )
+			result.append( ( word( wordIndex( i ) ) & ( 1L << i ) ) != 0L ? '1' : '0' );
 		
 		return result.toString();
 	}
@@ -375,19 +1543,300 @@ public final class BitVector {
 	 * Performs a logical XOR of this bit set with the bit set argument. 
 	 */
 	public void xor(BitVector rhs) {
-		if( length() != rhs.length() )
-			throw new IllegalArgumentException();
+		checkLength( rhs );
 		
-		impl.xor( rhs.impl );
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] ^= w[ i ];
+		}
+		wordsChanged();
 	}
 	
 	public static int HammingDistance( BitVector a, BitVector b ) {
-		if( a.length() != b.length() )
+		a.checkLength( b );
+		
+		int result = 0;
+		for( int c=0; c<a.chunks.length; ++c ) {
+			final long [] aw = a.chunks[ c ];
+			final long [] bw = a.alignedChunk( b, c );
+			if( aw == bw ) // a chunk still shared with a clone
+				continue;
+			for( int i=0; i<aw.length; ++i )
+				result += Long.bitCount( aw[ i ] ^ bw[ i ] );
+		}
+		return result;
+	}
+
+	/**
+	 * Returns 1 - |a & b| / |a | b|, or 0 if both are empty.
+	 * On bit vectors, this is the same as the Tanimoto distance. 
+	 */
+	public static double JaccardDistance( BitVector a, BitVector b ) {
+		a.checkLength( b );
+		
+		int intersection = 0;
+		int union = 0;
+		for( int c=0; c<a.chunks.length; ++c ) {
+			final long [] aw = a.chunks[ c ];
+			final long [] bw = a.alignedChunk( b, c );
+			for( int i=0; i<aw.length; ++i ) {
+				intersection += Long.bitCount( aw[ i ] & bw[ i ] );
+				union += Long.bitCount( aw[ i ] | bw[ i ] );
+			}
+		}
+		
+		return union == 0 ? 0.0 : 1.0 - intersection / (double)union;
+	}
+	
+	///////////////////////////////
+	
+	// Range and mask forms of the bitwise operations. 
+	// The range forms take the half-open range of bit indices [fromIndex, toIndex) 
+	// and touch only the words that it overlaps, so that the cost of an 
+	// operation on a block is proportional to the block, not to the vector.
+	// The mask forms restrict the operation to the bits set in mask.
+	
+	private void checkBounds( int fromIndex, int toIndex ) {
+		if( fromIndex < 0 || toIndex > length() || fromIndex > toIndex )
 			throw new IllegalArgumentException();
+	}
+	
+	/**
+	 * The bits of word wordIndex that lie within [fromIndex, toIndex).
+	 */
+	private static long rangeMask( int wordIndex, int fromIndex, int toIndex ) {
+		long mask = WORD_MASK;
+		if( wordIndex == wordIndex( fromIndex ) )
+			mask &= WORD_MASK << fromIndex;
+		if( wordIndex == wordIndex( toIndex - 1 ) )
+			mask &= WORD_MASK >>> -toIndex;
+		return mask;
+	}
+	
+	/**
+	 * Returns the number of bits set in [fromIndex, toIndex).
+	 */
+	public int cardinality( int fromIndex, int toIndex ) {
+		checkBounds( fromIndex, toIndex );
+		if( fromIndex == toIndex )
+			return 0;
+		
+		int result = 0;
+		for( int i=wordIndex( fromIndex ); i<=wordIndex( toIndex - 1 ); ++i )
+			result += Long.bitCount( word( i ) & rangeMask( i, fromIndex, toIndex ) );
+		
+		return result;
+	}
+
+	/**
+	 * Returns the number of bits set both in this and in mask.
+	 */
+	public int cardinality( BitVector mask ) {
+		checkLength( mask );
 		
-		BitSet aa = (BitSet)a.impl.clone();
-		aa.xor( b.impl );
-		return aa.cardinality();
+		int result = 0;
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = chunks[ c ];
+			final long [] m = alignedChunk( mask, c );
+			for( int i=0; i<chunk.length; ++i )
+				result += Long.bitCount( chunk[ i ] & m[ i ] );
+		}
+		return result;
+	}
+	
+	/**
+	 * Performs a logical AND with rhs of the bits in [fromIndex, toIndex). 
+	 */
+	public void and( BitVector rhs, int fromIndex, int toIndex ) {
+		checkLength( rhs );
+		checkBounds( fromIndex, toIndex );
+		if( fromIndex == toIndex )
+			return;
+
+		for( int i=wordIndex( fromIndex ); i<=wordIndex( toIndex - 1 ); ++i )
+			writeWord( i, word( i ) & ( rhs.word( i ) | ~rangeMask( i, fromIndex, toIndex ) ) );
+	}
+
+	/**
+	 * Performs a logical AND with rhs of the bits set in mask. 
+	 */
+	public void and( BitVector rhs, BitVector mask ) {
+		checkLength( rhs );
+		checkLength( mask );
+		
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] m = alignedChunk( mask, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] &= w[ i ] | ~m[ i ];
+		}
+		wordsChanged();
+	}
+	
+	/**
+	 * Clears the bits in [fromIndex, toIndex) that are set in rhs. 
+	 */
+	public void andNot( BitVector rhs, int fromIndex, int toIndex ) {
+		checkLength( rhs );
+		checkBounds( fromIndex, toIndex );
+		if( fromIndex == toIndex )
+			return;
+
+		for( int i=wordIndex( fromIndex ); i<=wordIndex( toIndex - 1 ); ++i )
+			writeWord( i, word( i ) & ~( rhs.word( i ) & rangeMask( i, fromIndex, toIndex ) ) );
+	}
+
+	/**
+	 * Clears the bits set in both rhs and mask. 
+	 */
+	public void andNot( BitVector rhs, BitVector mask ) {
+		checkLength( rhs );
+		checkLength( mask );
+		
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] m = alignedChunk( mask, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] &= ~( w[ i ] & m[ i ] );
+		}
+		wordsChanged();
+	}
+	
+	/**
+	 * Performs a logical OR with rhs of the bits in [fromIndex, toIndex). 
+	 */
+	public void or( BitVector rhs, int fromIndex, int toIndex ) {
+		checkLength( rhs );
+		checkBounds( fromIndex, toIndex );
+		if( fromIndex == toIndex )
+			return;
+
+		for( int i=wordIndex( fromIndex ); i<=wordIndex( toIndex - 1 ); ++i )
+			writeWord( i, word( i ) | ( rhs.word( i ) & rangeMask( i, fromIndex, toIndex ) ) );
+	}
+
+	/**
+	 * Performs a logical OR with rhs of the bits set in mask. 
+	 */
+	public void or( BitVector rhs, BitVector mask ) {
+		checkLength( rhs );
+		checkLength( mask );
+		
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] m = alignedChunk( mask, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] |= w[ i ] & m[ i ];
+		}
+		wordsChanged();
+	}
+	
+	/**
+	 * Performs a logical XOR with rhs of the bits in [fromIndex, toIndex). 
+	 */
+	public void xor( BitVector rhs, int fromIndex, int toIndex ) {
+		checkLength( rhs );
+		checkBounds( fromIndex, toIndex );
+		if( fromIndex == toIndex )
+			return;
+
+		for( int i=wordIndex( fromIndex ); i<=wordIndex( toIndex - 1 ); ++i )
+			writeWord( i, word( i ) ^ ( rhs.word( i ) & rangeMask( i, fromIndex, toIndex ) ) );
+	}
+
+	/**
+	 * Performs a logical XOR with rhs of the bits set in mask. 
+	 */
+	public void xor( BitVector rhs, BitVector mask ) {
+		checkLength( rhs );
+		checkLength( mask );
+		
+		prepareToWrite();
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] w = alignedChunk( rhs, c );
+			final long [] m = alignedChunk( mask, c );
+			final long [] chunk = writableChunk( c );
+			for( int i=0; i<chunk.length; ++i )
+				chunk[ i ] ^= w[ i ] & m[ i ];
+		}
+		wordsChanged();
+	}
+	
+	/**
+	 * Returns true if this and rhs have a set bit in common in [fromIndex, toIndex).
+	 */
+	public boolean intersects( BitVector rhs, int fromIndex, int toIndex ) {
+		checkLength( rhs );
+		checkBounds( fromIndex, toIndex );
+		if( fromIndex == toIndex )
+			return false;
+		
+		for( int i=wordIndex( fromIndex ); i<=wordIndex( toIndex - 1 ); ++i )
+			if( ( word( i ) & rhs.word( i ) & rangeMask( i, fromIndex, toIndex ) ) != 0L )
+				return true;
+		
+		return false;
+	}
+
+	/**
+	 * Returns true if this and rhs have in common a bit that is set in mask.
+	 */
+	public boolean intersects( BitVector rhs, BitVector mask ) {
+		checkLength( rhs );
+		checkLength( mask );
+		
+		for( int c=0; c<chunks.length; ++c ) {
+			final long [] chunk = chunks[ c ];
+			final long [] w = alignedChunk( rhs, c );
+			final long [] m = alignedChunk( mask, c );
+			for( int i=0; i<chunk.length; ++i )
+				if( ( chunk[ i ] & w[ i ] & m[ i ] ) != 0L )
+					return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the Hamming distance between a and b restricted to [fromIndex, toIndex).
+	 */
+	public static int HammingDistance( BitVector a, BitVector b, int fromIndex, int toIndex ) {
+		a.checkLength( b );
+		a.checkBounds( fromIndex, toIndex );
+		if( fromIndex == toIndex )
+			return 0;
+		
+		int result = 0;
+		for( int i=wordIndex( fromIndex ); i<=wordIndex( toIndex - 1 ); ++i )
+			result += Long.bitCount( ( a.word( i ) ^ b.word( i ) ) & rangeMask( i, fromIndex, toIndex ) );
+		
+		return result;
+	}
+
+	/**
+	 * Returns the Hamming distance between a and b restricted to the bits set in mask.
+	 */
+	public static int HammingDistance( BitVector a, BitVector b, BitVector mask ) {
+		a.checkLength( b );
+		a.checkLength( mask );
+		
+		int result = 0;
+		for( int c=0; c<a.chunks.length; ++c ) {
+			final long [] aw = a.chunks[ c ];
+			final long [] bw = a.alignedChunk( b, c );
+			final long [] m = a.alignedChunk( mask, c );
+			for( int i=0; i<aw.length; ++i )
+				result += Long.bitCount( ( aw[ i ] ^ bw[ i ] ) & m[ i ] );
+		}
+		return result;
 	}
 }
 
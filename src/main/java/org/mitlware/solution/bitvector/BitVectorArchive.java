@@ -0,0 +1,370 @@
+package org.mitlware.solution.bitvector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.function.ObjLongConsumer;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * An append-only store of BitVectors of a fixed length, held outside 
+ * the Java heap: either in a memory-mapped file, which can be reopened 
+ * after a restart, or in direct buffers. 
+ * 
+ * Each vector occupies a record of ceil(length/64) little-endian longs. 
+ * Records are laid out contiguously in segments of at most 64MB, each 
+ * mapped separately, so archives may exceed the 2GB limit of a single 
+ * buffer. Only the last segment is partly used: it starts small and 
+ * doubles as records are appended, so a small archive occupies little 
+ * more than its records. A file starts with a header of 64 bytes: a magic number, 
+ * the vector length and the number of records.
+ * 
+ * Vectors are read by copying their words into a caller-supplied 
+ * BitVector, which can be reused, so reading allocates nothing; 
+ * forEach passes the same flyweight BitVector for every record.
+ * Not thread-safe. 
+ */
+
+public final class BitVectorArchive 
+implements Closeable {
+	
+	private static final long MAGIC = 0x31415642_4c74694dL; // "MitLBVA1", little-endian
+	private static final int HEADER_BYTES = 64;
+	private static final int SEGMENT_BYTES = 1 << 26;
+	private static final int MIN_SEGMENT_RECORDS = 64;
+	
+	private final FileChannel channel;
+	private final LongBuffer header;
+	private final int length;
+	private final int wordsPerRecord;
+	private final int recordsPerSegment;
+	private final List< LongBuffer > segments = new ArrayList< LongBuffer >();
+	private int lastSegmentRecords = 0;
+	private long size;
+	
+	/*
+	 * For a file-backed archive, the mapped buffers underlying header and 
+	 * segments, which force() must flush, and which of them have been written.
+	 */
+	
+	private final MappedByteBuffer mappedHeader;
+	private final List< MappedByteBuffer > mappedSegments = new ArrayList< MappedByteBuffer >();
+	private final BitSet dirtySegments = new BitSet();
+	private boolean headerDirty = false;
+	
+	///////////////////////////////
+	
+	private BitVectorArchive( FileChannel channel, MappedByteBuffer mappedHeader, LongBuffer header, int length, long size ) {
+		if( length <= 0 )
+			throw new IllegalArgumentException();
+		
+		this.channel = channel;
+		this.mappedHeader = mappedHeader;
+		this.header = header;
+		this.length = length;
+		this.wordsPerRecord = ( length + Long.SIZE - 1 ) / Long.SIZE;
+		this.recordsPerSegment = Math.max( 1, SEGMENT_BYTES / ( wordsPerRecord * Long.BYTES ) );
+		this.size = size;
+	}
+
+	/**
+	 * @return an empty archive of vectors of the specified length, held in direct buffers 
+	 */
+	public static BitVectorArchive allocateDirect( int length ) {
+		LongBuffer header = ByteBuffer.allocateDirect( HEADER_BYTES ).order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer(); 
+		return new BitVectorArchive( null, null, header, length, 0 );
+	}
+	
+	/**
+	 * @return an empty archive of vectors of the specified length, 
+	 * mapped from the specified file, which is created or truncated.  
+	 */
+	public static BitVectorArchive create( Path file, int length ) throws IOException {
+		if( length <= 0 )
+			throw new IllegalArgumentException();
+		
+		FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE, 
+			StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE );
+		MappedByteBuffer mappedHeader = mapHeader( channel );
+		LongBuffer header = longs( mappedHeader );
+		header.put( 0, MAGIC );
+		header.put( 1, length );
+		header.put( 2, 0L );
+		BitVectorArchive result = new BitVectorArchive( channel, mappedHeader, header, length, 0 );
+		result.headerDirty = true;
+		return result;
+	}
+
+	/**
+	 * Reopens an archive previously created by create.
+	 */
+	public static BitVectorArchive open( Path file ) throws IOException {
+		FileChannel channel = FileChannel.open( file, StandardOpenOption.READ, StandardOpenOption.WRITE );
+		if( channel.size() < HEADER_BYTES ) {
+			channel.close();
+			throw new IOException( "Not a BitVector archive: " + file );
+		}
+		
+		MappedByteBuffer mappedHeader = mapHeader( channel );
+		LongBuffer header = longs( mappedHeader );
+		if( header.get( 0 ) != MAGIC ) {
+			channel.close();
+			throw new IOException( "Not a BitVector archive: " + file );
+		}
+		return new BitVectorArchive( channel, mappedHeader, header, (int)header.get( 1 ), header.get( 2 ) );
+	}
+	
+	private static MappedByteBuffer mapHeader( FileChannel channel ) throws IOException {
+		return channel.map( FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES );
+	}
+
+	private static LongBuffer longs( ByteBuffer bytes ) {
+		return bytes.order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer();
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * @return the length of the vectors in this archive
+	 */
+	public int length() { return length; }
+	
+	/**
+	 * @return the number of vectors in this archive
+	 */
+	public long size() { return size; }
+	
+	/**
+	 * @return the ordinal of the appended vector
+	 */
+	public long append( BitVector x ) {
+		checkLength( x );
+		
+		final long ordinal = size;
+		write( ordinal, x );
+		size = ordinal + 1;
+		header.put( 2, size );
+		headerDirty = true;
+		return ordinal;
+	}
+	
+	public void set( long ordinal, BitVector x ) {
+		checkOrdinal( ordinal );
+		checkLength( x );
+		
+		write( ordinal, x );
+	}
+
+	/**
+	 * Copies the vector with the specified ordinal into dest.
+	 */
+	public void get( long ordinal, BitVector dest ) {
+		checkOrdinal( ordinal );
+		checkLength( dest );
+		
+		final LongBuffer segment = segment( ordinal );
+		final int base = offset( ordinal );
+		for( int i=0; i<wordsPerRecord; ++i )
+			dest.setWord( i, segment.get( base + i ) );
+	}
+
+	public BitVector get( long ordinal ) {
+		BitVector result = new BitVector( length );
+		get( ordinal, result );
+		return result;
+	}
+	
+	public boolean get( long ordinal, int bitIndex ) {
+		checkOrdinal( ordinal );
+		if( bitIndex < 0 || bitIndex >= length )
+			throw new IllegalArgumentException();
+		
+		final long word = segment( ordinal ).get( offset( ordinal ) + bitIndex / Long.SIZE );
+		return ( word & ( 1L << bitIndex ) ) != 0L;
+	}
+	
+	/**
+	 * @return the Hamming distance between x and the vector with the specified ordinal, 
+	 * computed in place 
+	 */
+	public int HammingDistance( long ordinal, BitVector x ) {
+		checkOrdinal( ordinal );
+		checkLength( x );
+		
+		final LongBuffer segment = segment( ordinal );
+		final int base = offset( ordinal );
+		int result = 0;
+		for( int i=0; i<wordsPerRecord; ++i )
+			result += Long.bitCount( segment.get( base + i ) ^ x.getWord( i ) );
+		return result;
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * Passes each vector in turn to action, in order of ordinal.
+	 * The same BitVector is reloaded for every call, so must not be 
+	 * modified or retained by action.
+	 */
+	public void forEach( ObjLongConsumer< BitVector > action ) {
+		final BitVector flyweight = new BitVector( length );
+		for( long ordinal=0; ordinal<size; ++ordinal ) {
+			get( ordinal, flyweight );
+			action.accept( flyweight, ordinal );
+		}
+	}
+
+	/**
+	 * Passes to action the ordinal of each vector within Hamming distance radius of query.
+	 */
+	public void withinRadius( BitVector query, int radius, LongConsumer action ) {
+		checkLength( query );
+		
+		for( long ordinal=0; ordinal<size; ++ordinal ) {
+			final LongBuffer segment = segment( ordinal );
+			final int base = offset( ordinal );
+			int d = 0;
+			for( int i=0; i<wordsPerRecord && d <= radius; ++i )
+				d += Long.bitCount( segment.get( base + i ) ^ query.getWord( i ) );
+			if( d <= radius )
+				action.accept( ordinal );
+		}
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * For a file-backed archive, writes any changes through to the file, 
+	 * by forcing each mapped buffer written since the last call.
+	 */
+	public void force() throws IOException {
+		if( channel == null )
+			return;
+		
+		for( int i=dirtySegments.nextSetBit( 0 ); i>=0; i=dirtySegments.nextSetBit( i + 1 ) )
+			mappedSegments.get( i ).force();
+		dirtySegments.clear();
+		
+		if( headerDirty ) {
+			mappedHeader.force();
+			headerDirty = false;
+		}
+	}
+	
+	/**
+	 * Closes the underlying file, if any, without forcing it. 
+	 * Mapped memory is released when the buffers are garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		segments.clear();
+		mappedSegments.clear();
+		if( channel != null )
+			channel.close();
+	}
+	
+	///////////////////////////////
+
+	private void write( long ordinal, BitVector x ) {
+		final LongBuffer segment = segment( ordinal );
+		if( channel != null )
+			dirtySegments.set( (int)( ordinal / recordsPerSegment ) );
+		final int base = offset( ordinal );
+		for( int i=0; i<wordsPerRecord; ++i )
+			segment.put( base + i, x.getWord( i ) );
+	}
+	
+	private int offset( long ordinal ) {
+		return (int)( ordinal % recordsPerSegment ) * wordsPerRecord;
+	}
+	
+	private LongBuffer segment( long ordinal ) {
+		final long index = ordinal / recordsPerSegment;
+		if( index > Integer.MAX_VALUE )
+			throw new IllegalStateException( "Archive too large" );
+		
+		final int i = (int)index;
+		final int required = (int)( ordinal % recordsPerSegment ) + 1;
+		final int last = segments.size() - 1;
+		if( i < last || ( i == last && required <= lastSegmentRecords ) )
+			return segments.get( i );
+		
+		// Segments before the one holding ordinal are always full:
+		if( i > last && last >= 0 && lastSegmentRecords < recordsPerSegment )
+			mapSegment( last, recordsPerSegment );
+		while( segments.size() < i )
+			mapSegment( segments.size(), recordsPerSegment );
+		
+		int records = i < segments.size() ? lastSegmentRecords : Math.min( MIN_SEGMENT_RECORDS, recordsPerSegment );
+		while( records < required )
+			records = (int)Math.min( 2L * records, recordsPerSegment );
+		mapSegment( i, records );
+		return segments.get( i );
+	}
+	
+	/**
+	 * Allocates or maps segment index (which must be the last or the next) 
+	 * to hold the specified number of records. A segment of a file always 
+	 * starts at the same offset, so remapping it preserves its contents; 
+	 * the old and new mappings share the same pages, so forcing the new one 
+	 * also writes through anything written via the old one.  
+	 */
+	private void mapSegment( int index, int records ) {
+		final long segmentBytes = (long)recordsPerSegment * wordsPerRecord * Long.BYTES;
+		final long bytes = (long)records * wordsPerRecord * Long.BYTES;
+		final LongBuffer segment;
+		if( channel == null ) {
+			segment = longs( ByteBuffer.allocateDirect( (int)bytes ) );
+			if( index < segments.size() ) {
+				final LongBuffer old = segments.get( index ).duplicate();
+				old.clear();
+				segment.put( old );
+				segment.clear();
+			}
+		}
+		else {
+			try {
+				final MappedByteBuffer mapped = 
+					channel.map( FileChannel.MapMode.READ_WRITE, HEADER_BYTES + index * segmentBytes, bytes );
+				if( index < mappedSegments.size() )
+					mappedSegments.set( index, mapped );
+				else
+					mappedSegments.add( mapped );
+				segment = longs( mapped );
+			}
+			catch( IOException e ) {
+				throw new UncheckedIOException( e );
+			}
+		}
+		
+		if( index < segments.size() )
+			segments.set( index, segment );
+		else
+			segments.add( segment );
+		lastSegmentRecords = records;
+	}
+	
+	private void checkOrdinal( long ordinal ) {
+		if( ordinal < 0 || ordinal >= size )
+			throw new IllegalArgumentException();
+	}
+	
+	private void checkLength( BitVector x ) {
+		if( x.length() != length )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,189 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.Arrays;
+import java.util.Random;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * Recombination operators for BitVector.
+ * 
+ * Each operator combines two parents of equal length into one or 
+ * two offspring, which are written into caller-supplied destination 
+ * vectors of the same length. Pass null for child2 if only one offspring 
+ * is required. Offspring are built a 64-bit word at a time, by splicing 
+ * the parent words under a mask: child1 takes its bits from parent1 where
+ * the mask is clear and from parent2 where it is set, and child2 the reverse.
+ * Since each word is read from both parents before being written, a 
+ * destination may also be one of the parents.   
+ * 
+ * @book{Eiben:2003:IEC:954563,
+ * 	 author = {Eiben, Agoston E. and Smith, J. E.},
+ * 	 title = {Introduction to Evolutionary Computing},
+ * year = {2003},
+ * isbn = {3540401849},
+ * publisher = {SpringerVerlag},
+ * }
+ */
+
+public final class BitVectorCrossover {
+
+	private BitVectorCrossover() {}
+	
+	///////////////////////////////
+	
+	/**
+	 * child1 takes bits [0,point) from parent1 and [point,length) from parent2; 
+	 * child2 the reverse.
+	 */
+	public static void onePoint( BitVector parent1, BitVector parent2, int point, 
+		BitVector child1, BitVector child2 ) {
+		checkLengths( parent1, parent2, child1, child2 );		
+		if( point < 0 || point > parent1.length() )
+			throw new IllegalArgumentException();
+		
+		splice( parent1, parent2, point, child1, child2 );
+	}
+
+	/**
+	 * One-point crossover at a point chosen uniformly from [1,length).
+	 */
+	public static void onePoint( BitVector parent1, BitVector parent2, Random random, 
+		BitVector child1, BitVector child2 ) {
+		checkLengths( parent1, parent2, child1, child2 );		
+		if( parent1.length() < 2 )
+			throw new IllegalArgumentException();
+		
+		final int point = 1 + random.nextInt( parent1.length() - 1 );
+		splice( parent1, parent2, point, child1, child2 );
+	}
+	
+	/**
+	 * Offspring alternate between parents at each of the specified points,
+	 * which must be in ascending order and lie in [0,length].
+	 * child1 starts with parent1, child2 with parent2.
+	 */
+	public static void kPoint( BitVector parent1, BitVector parent2, int [] points, 
+		BitVector child1, BitVector child2 ) {
+		kPoint( parent1, parent2, points, points.length, child1, child2 );
+	}
+	
+	private static void kPoint( BitVector parent1, BitVector parent2, int [] points, int numPoints, 
+		BitVector child1, BitVector child2 ) {
+		checkLengths( parent1, parent2, child1, child2 );		
+		for( int i=0; i<numPoints; ++i ) {
+			if( points[ i ] < 0 || points[ i ] > parent1.length() )
+				throw new IllegalArgumentException();
+			if( i > 0 && points[ i ] < points[ i - 1 ] )
+				throw new IllegalArgumentException();
+		}
+		
+		long carry = 0L;
+		int k = 0;
+		for( int i=0; i<parent1.numWords(); ++i ) {
+			final int wordEnd = ( i + 1 ) * Long.SIZE;
+			long mask = carry;
+			while( k < numPoints && points[ k ] < wordEnd ) {
+				mask ^= -1L << points[ k++ ];
+				carry = ~carry;
+			}
+			spliceWord( parent1, parent2, i, mask, child1, child2 );
+		}
+	}
+
+	/**
+	 * k-point crossover at k distinct points chosen uniformly from [1,length).
+	 */
+	public static void kPoint( BitVector parent1, BitVector parent2, int k, Random random,  
+		BitVector child1, BitVector child2 ) {
+		if( k < 0 )
+			throw new IllegalArgumentException();
+		
+		kPoint( parent1, parent2, k, random, new int [ k ], child1, child2 );
+	}
+
+	/**
+	 * As above, but allocation-free: the points are drawn into the first k 
+	 * elements of the caller-supplied scratch array, which can be reused. 
+	 */
+	public static void kPoint( BitVector parent1, BitVector parent2, int k, Random random,  
+		int [] scratch, BitVector child1, BitVector child2 ) {
+		final int numCandidates = parent1.length() - 1;
+		if( k < 0 || k > numCandidates || scratch.length < k )
+			throw new IllegalArgumentException();
+		
+		// Floyd's algorithm for sampling without replacement, keeping the 
+		// points sorted in place, so that membership is a binary search. 
+		// Where t is already present, j + 1 exceeds every point drawn so far:
+		for( int j = numCandidates - k, count = 0; j < numCandidates; ++j, ++count ) {
+			final int t = 1 + random.nextInt( j + 1 );
+			final int pos = Arrays.binarySearch( scratch, 0, count, t );
+			if( pos >= 0 )
+				scratch[ count ] = j + 1;
+			else {
+				final int insertion = -pos - 1;
+				System.arraycopy( scratch, insertion, scratch, insertion + 1, count - insertion );
+				scratch[ insertion ] = t;
+			}
+		}
+		
+		kPoint( parent1, parent2, scratch, k, child1, child2 );
+	}
+
+	/**
+	 * Each bit is taken from either parent with equal probability.
+	 * Draws one random long per 64 bits.
+	 */
+	public static void uniform( BitVector parent1, BitVector parent2, Random random, 
+		BitVector child1, BitVector child2 ) {
+		checkLengths( parent1, parent2, child1, child2 );
+		
+		for( int i=0; i<parent1.numWords(); ++i )
+			spliceWord( parent1, parent2, i, random.nextLong(), child1, child2 );
+	}
+
+	/**
+	 * child1 takes bits from parent2 where mask is set and from parent1 elsewhere; 
+	 * child2 the reverse.
+	 */
+	public static void masked( BitVector parent1, BitVector parent2, BitVector mask, 
+		BitVector child1, BitVector child2 ) {
+		checkLengths( parent1, parent2, child1, child2 );
+		if( mask.length() != parent1.length() )
+			throw new IllegalArgumentException();
+		
+		for( int i=0; i<parent1.numWords(); ++i )
+			spliceWord( parent1, parent2, i, mask.getWord( i ), child1, child2 );
+	}
+	
+	///////////////////////////////
+	
+	private static void splice( BitVector parent1, BitVector parent2, int point, 
+		BitVector child1, BitVector child2 ) {
+		final int pointWord = point / Long.SIZE;
+		for( int i=0; i<parent1.numWords(); ++i ) {
+			final long mask = i < pointWord ? 0L : i > pointWord ? -1L : -1L << point;
+			spliceWord( parent1, parent2, i, mask, child1, child2 );
+		}
+	}
+	
+	private static void spliceWord( BitVector parent1, BitVector parent2, int wordIndex, long mask, 
+		BitVector child1, BitVector child2 ) {
+		final long a = parent1.getWord( wordIndex );
+		final long b = parent2.getWord( wordIndex );
+		child1.setWord( wordIndex, ( a & ~mask ) | ( b & mask ) );
+		if( child2 != null )
+			child2.setWord( wordIndex, ( b & ~mask ) | ( a & mask ) );
+	}
+
+	private static void checkLengths( BitVector parent1, BitVector parent2, 
+		BitVector child1, BitVector child2 ) {
+		final int length = parent1.length();
+		if( parent2.length() != length || child1.length() != length )
+			throw new IllegalArgumentException();
+		if( child2 != null && child2.length() != length )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
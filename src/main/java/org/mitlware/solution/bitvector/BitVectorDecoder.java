@@ -0,0 +1,251 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * Decodes a BitVector into a vector of real or integer parameters,
+ * as for the binary encodings of continuous problems.
+ *
+ * Variable v occupies the bits [offset( v ), offset( v ) + width( v ) ),
+ * with bit offset( v ) + j as binary digit j of its code, i.e. in the same
+ * little-endian order as BitVector.fromLong. Under Gray coding, the code
+ * is first converted from reflected binary Gray code. The real value of
+ * a code c is then lower + c * ( upper - lower ) / ( 2^width - 1 ).
+ *
+ * Each code is read with at most two word loads and, for Gray coding,
+ * six shift-xors, so decoding costs O(1) per variable rather than O(width).
+ * After a change to some bits of a decoded vector, update re-decodes
+ * only the variables that contain them.
+ */
+
+public final class BitVectorDecoder {
+
+	public enum Coding { BINARY, GRAY }
+
+	///////////////////////////////
+
+	private final Coding coding;
+	/** offsets[ v ] is the first bit of variable v; offsets[ numVariables ] is the length */
+	private final int [] offsets;
+	private final int [] widths;
+	private final double [] lower;
+	private final double [] scale;
+
+	///////////////////////////////
+
+	/**
+	 * Decodes numVariables variables of width bits each, all in [lower, upper].
+	 */
+	public BitVectorDecoder( int numVariables, int width, double lower, double upper, Coding coding ) {
+		this( filled( numVariables, width ), filled( numVariables, lower ), filled( numVariables, upper ), coding );
+	}
+
+	/**
+	 * Decodes variables of widths[ v ] bits each, with variable v in [lower[ v ], upper[ v ]].
+	 * Widths must be in [1, 64].
+	 */
+	public BitVectorDecoder( int [] widths, double [] lower, double [] upper, Coding coding ) {
+		if( lower.length != widths.length || upper.length != widths.length )
+			throw new IllegalArgumentException();
+
+		this.coding = coding;
+		this.widths = widths.clone();
+		this.lower = lower.clone();
+		this.offsets = new int [ widths.length + 1 ];
+		this.scale = new double [ widths.length ];
+
+		long offset = 0;
+		for( int v=0; v<widths.length; ++v ) {
+			if( widths[ v ] < 1 || widths[ v ] > Long.SIZE )
+				throw new IllegalArgumentException();
+
+			offsets[ v ] = (int)offset;
+			offset += widths[ v ];
+			if( offset > Integer.MAX_VALUE )
+				throw new IllegalArgumentException();
+
+			scale[ v ] = ( upper[ v ] - lower[ v ] ) / ( Math.pow( 2.0, widths[ v ] ) - 1.0 );
+		}
+		offsets[ widths.length ] = (int)offset;
+	}
+
+	private static int [] filled( int n, int value ) {
+		int [] result = new int [ n ];
+		Arrays.fill( result, value );
+		return result;
+	}
+
+	private static double [] filled( int n, double value ) {
+		double [] result = new double [ n ];
+		Arrays.fill( result, value );
+		return result;
+	}
+
+	///////////////////////////////
+
+	public int numVariables() { return widths.length; }
+
+	/**
+	 * The number of bits of the vectors that this decodes.
+	 */
+	public int length() { return offsets[ widths.length ]; }
+
+	public Coding coding() { return coding; }
+
+	public int offset( int variable ) { return offsets[ variable ]; }
+
+	public int width( int variable ) { return widths[ variable ]; }
+
+	/**
+	 * Returns the variable that contains bit bitIndex.
+	 */
+	public int variableOf( int bitIndex ) {
+		if( bitIndex < 0 || bitIndex >= length() )
+			throw new IllegalArgumentException();
+
+		final int pos = Arrays.binarySearch( offsets, 0, widths.length, bitIndex );
+		return pos >= 0 ? pos : -pos - 2;
+	}
+
+	///////////////////////////////
+
+	/**
+	 * Returns the code of variable, as an unsigned integer of width( variable ) bits.
+	 */
+	public long code( BitVector x, int variable ) {
+		checkLength( x );
+		return codeUnchecked( x, variable );
+	}
+
+	private long codeUnchecked( BitVector x, int variable ) {
+		final int from = offsets[ variable ];
+		final int width = widths[ variable ];
+		final int u = from >>> 6;
+		final int shift = from & ( Long.SIZE - 1 );
+
+		long bits = x.getWord( u ) >>> shift;
+		if( shift + width > Long.SIZE )
+			bits |= x.getWord( u + 1 ) << -shift;
+		bits &= -1L >>> -width;
+
+		return coding == Coding.GRAY ? grayToBinary( bits ) : bits;
+	}
+
+	/**
+	 * Converts from reflected binary Gray code: each binary digit
+	 * is the xor of the Gray digits at and above it.
+	 */
+	static long grayToBinary( long gray ) {
+		gray ^= gray >>> 1;
+		gray ^= gray >>> 2;
+		gray ^= gray >>> 4;
+		gray ^= gray >>> 8;
+		gray ^= gray >>> 16;
+		gray ^= gray >>> 32;
+		return gray;
+	}
+
+	public double decode( BitVector x, int variable ) {
+		checkLength( x );
+		return value( variable, codeUnchecked( x, variable ) );
+	}
+
+	private double value( int variable, long code ) {
+		final double c = code >= 0 ? code : ( ( code >>> 1 ) | ( code & 1L ) ) * 2.0;
+		return lower[ variable ] + c * scale[ variable ];
+	}
+
+	public double [] decode( BitVector x ) {
+		double [] result = new double [ numVariables() ];
+		decode( x, result, 0 );
+		return result;
+	}
+
+	/**
+	 * Writes the value of variable v to dest[ destPos + v ].
+	 */
+	public void decode( BitVector x, double [] dest, int destPos ) {
+		checkLength( x );
+		for( int v=0; v<widths.length; ++v )
+			dest[ destPos + v ] = value( v, codeUnchecked( x, v ) );
+	}
+
+	/**
+	 * Writes the code of variable v to dest[ destPos + v ],
+	 * for decoders whose widths are all at most 31.
+	 */
+	public void decodeCodes( BitVector x, int [] dest, int destPos ) {
+		checkLength( x );
+		for( int v=0; v<widths.length; ++v ) {
+			if( widths[ v ] >= Integer.SIZE )
+				throw new IllegalArgumentException();
+
+			dest[ destPos + v ] = (int)codeUnchecked( x, v );
+		}
+	}
+
+	/**
+	 * Decodes each of population into the flat row-major array dest,
+	 * with variable v of population.get( i ) at dest[ i * numVariables() + v ].
+	 */
+	public void decode( List< BitVector > population, double [] dest, boolean parallel ) {
+		if( dest.length < population.size() * numVariables() )
+			throw new IllegalArgumentException();
+
+		IntStream rows = IntStream.range( 0, population.size() );
+		( parallel ? rows.parallel() : rows ).forEach( i ->
+			decode( population.get( i ), dest, i * numVariables() ) );
+	}
+
+	/**
+	 * Decodes each row of population into the flat row-major array dest.
+	 */
+	public void decode( BitMatrix population, double [] dest, boolean parallel ) {
+		if( dest.length < population.numRows() * numVariables() )
+			throw new IllegalArgumentException();
+
+		IntStream rows = IntStream.range( 0, population.numRows() );
+		( parallel ? rows.parallel() : rows ).forEach( i ->
+			decode( population.row( i ), dest, i * numVariables() ) );
+	}
+
+	///////////////////////////////
+
+	/**
+	 * Re-decodes into dest only the variable that contains bitIndex,
+	 * as after x.flip( bitIndex ). Returns that variable.
+	 */
+	public int update( BitVector x, int bitIndex, double [] dest ) {
+		checkLength( x );
+		final int v = variableOf( bitIndex );
+		dest[ v ] = value( v, codeUnchecked( x, v ) );
+		return v;
+	}
+
+	/**
+	 * Re-decodes into dest only the variables that overlap the bits [fromIndex, toIndex).
+	 */
+	public void update( BitVector x, int fromIndex, int toIndex, double [] dest ) {
+		checkLength( x );
+		if( fromIndex < 0 || toIndex > length() || fromIndex > toIndex )
+			throw new IllegalArgumentException();
+		if( fromIndex == toIndex )
+			return;
+
+		for( int v=variableOf( fromIndex ); v<widths.length && offsets[ v ] < toIndex; ++v )
+			dest[ v ] = value( v, codeUnchecked( x, v ) );
+	}
+
+	///////////////////////////////
+
+	private void checkLength( BitVector x ) {
+		if( x.length() != length() )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,108 @@
+package org.mitlware.solution.bitvector;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A read-only view of the bits [fromIndex, toIndex) of a bit vector,
+ * as obtained from BitVector.slice.
+ *
+ * No bits are copied: the view reads through to the underlying vector,
+ * and so reflects any later changes to it. Index 0 of the view is
+ * fromIndex of the underlying vector.
+ *
+ * Slices are the operands of BitVector.concat, with which the
+ * variable-length operators are written without per-bit loops, e.g.
+ * the duplication of the segment [i, j) of x is
+ * <pre>
+ *   BitVector.concat( x.slice( 0, j ), x.slice( i, j ), x.slice( j, x.length() ) )
+ * </pre>
+ */
+
+public final class BitVectorSlice {
+
+	private final BitVector source;
+	private final int fromIndex;
+	private final int length;
+
+	///////////////////////////////
+
+	BitVectorSlice( BitVector source, int fromIndex, int toIndex ) {
+		if( fromIndex < 0 || toIndex > source.length() || fromIndex > toIndex )
+			throw new IllegalArgumentException();
+
+		this.source = source;
+		this.fromIndex = fromIndex;
+		this.length = toIndex - fromIndex;
+	}
+
+	///////////////////////////////
+
+	public int length() { return length; }
+
+	public boolean get( int bitIndex ) {
+		if( bitIndex < 0 || bitIndex >= length )
+			throw new IllegalArgumentException();
+
+		return source.get( fromIndex + bitIndex );
+	}
+
+	public int cardinality() {
+		int result = 0;
+		for( int i=0; i<numWords(); ++i )
+			result += Long.bitCount( getWord( i ) );
+
+		return result;
+	}
+
+	/**
+	 * Returns a view of the bits [fromIndex, toIndex) of this slice.
+	 */
+	public BitVectorSlice slice( int fromIndex, int toIndex ) {
+		if( fromIndex < 0 || toIndex > length || fromIndex > toIndex )
+			throw new IllegalArgumentException();
+
+		return new BitVectorSlice( source, this.fromIndex + fromIndex, this.fromIndex + toIndex );
+	}
+
+	/**
+	 * Returns a copy of the bits of this slice.
+	 */
+	public BitVector toBitVector() {
+		return source.subVector( fromIndex, fromIndex + length );
+	}
+
+	///////////////////////////////
+
+	int numWords() { return ( length + Long.SIZE - 1 ) >>> 6; }
+
+	/**
+	 * Returns bits [64 * wordIndex, 64 * wordIndex + 64) of this slice,
+	 * with those beyond length clear.
+	 */
+	long getWord( int wordIndex ) {
+		final int bitIndex = fromIndex + ( wordIndex << 6 );
+		final int u = bitIndex >>> 6;
+		final int shift = bitIndex & ( Long.SIZE - 1 );
+
+		long word = source.getWord( u ) >>> shift;
+		if( shift != 0 && u + 1 < source.numWords() )
+			word |= source.getWord( u + 1 ) << -shift;
+
+		if( wordIndex == numWords() - 1 )
+			word &= -1L >>> -length;
+
+		return word;
+	}
+
+	///////////////////////////////
+
+	public String toString() {
+		StringBuilder result = new StringBuilder( length );
+		for( int i=length - 1; i>=0; --i )
+			result.append( source.get( fromIndex + i ) ? '1' : '0' );
+
+		return result.toString();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
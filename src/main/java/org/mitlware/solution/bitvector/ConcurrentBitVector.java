@@ -0,0 +1,162 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A fixed-length bit vector that may be updated concurrently by 
+ * multiple threads without locking, e.g. as a visited or tabu map 
+ * shared between island-model workers.
+ * 
+ * Each single-bit update is an atomic compare-and-set on the 64-bit 
+ * word containing it, so updates to different bits never interfere, 
+ * and contention is limited to threads updating the same word.
+ * Whole-vector queries (cardinality, snapshot) read the words one at a 
+ * time, and so are only weakly consistent: they reflect every update that 
+ * completed before they started, and may or may not reflect those made 
+ * while they run.
+ */
+
+public final class ConcurrentBitVector {
+
+	private final AtomicLongArray words;
+	private final int length;
+	
+	///////////////////////////////
+	
+	public ConcurrentBitVector( int nbits ) {
+		if( nbits < 0 )
+			throw new IllegalArgumentException();
+		
+		words = new AtomicLongArray( ( nbits + Long.SIZE - 1 ) / Long.SIZE );
+		length = nbits;
+	}
+	
+	public ConcurrentBitVector( BitVector rhs ) {
+		this( rhs.length() );
+		for( int i=0; i<words.length(); ++i )
+			words.set( i, rhs.getWord( i ) );
+	}
+	
+	///////////////////////////////
+	
+	public int length() { return length; }
+	
+	public boolean get( int bitIndex ) {
+		checkIndex( bitIndex );
+		
+		return ( words.get( bitIndex / Long.SIZE ) & ( 1L << bitIndex ) ) != 0L;
+	}
+	
+	public void set( int bitIndex ) {
+		getAndSet( bitIndex, true );
+	}
+
+	public void clear( int bitIndex ) {
+		getAndSet( bitIndex, false );
+	}
+	
+	public void set( int bitIndex, boolean value ) {
+		getAndSet( bitIndex, value );
+	}
+	
+	/**
+	 * Atomically sets the bit at the specified index to the specified value.
+	 * @return the previous value of the bit 
+	 */
+	public boolean getAndSet( int bitIndex, boolean value ) {
+		checkIndex( bitIndex );
+		
+		final int u = bitIndex / Long.SIZE;
+		final long mask = 1L << bitIndex;
+		for( ; ; ) {
+			final long word = words.get( u );
+			final boolean previous = ( word & mask ) != 0L;
+			if( previous == value )
+				return previous;
+			if( words.compareAndSet( u, word, word ^ mask ) )
+				return previous;
+		}
+	}
+	
+	/**
+	 * Atomically complements the bit at the specified index.
+	 * @return the previous value of the bit 
+	 */
+	public boolean getAndFlip( int bitIndex ) {
+		checkIndex( bitIndex );
+		
+		final int u = bitIndex / Long.SIZE;
+		final long mask = 1L << bitIndex;
+		for( ; ; ) {
+			final long word = words.get( u );
+			if( words.compareAndSet( u, word, word ^ mask ) )
+				return ( word & mask ) != 0L;
+		}
+	}
+
+	public void flip( int bitIndex ) {
+		getAndFlip( bitIndex );
+	}
+	
+	/**
+	 * Atomically sets the bit at the specified index if it is clear.
+	 * @return true if this call set the bit, as for Set.add
+	 */
+	public boolean add( int bitIndex ) {
+		return !getAndSet( bitIndex, true );
+	}
+	
+	///////////////////////////////
+
+	/**
+	 * @return the number of bits set, which is weakly consistent under concurrent update
+	 */
+	public int cardinality() {
+		int result = 0;
+		for( int i=0; i<words.length(); ++i )
+			result += Long.bitCount( words.get( i ) );
+		
+		return result;
+	}
+
+	/**
+	 * Copies the bits into dest, a word at a time, which is weakly 
+	 * consistent under concurrent update.
+	 */
+	public void snapshot( BitVector dest ) {
+		if( dest.length() != length )
+			throw new IllegalArgumentException();
+		
+		for( int i=0; i<words.length(); ++i )
+			dest.setWord( i, words.get( i ) );
+	}
+
+	public BitVector snapshot() {
+		BitVector result = new BitVector( length );
+		snapshot( result );
+		return result;
+	}
+
+	/**
+	 * Clears every bit. Not atomic as a whole: each word is cleared atomically.
+	 */
+	public void clear() {
+		for( int i=0; i<words.length(); ++i )
+			words.set( i, 0L );
+	}
+	
+	public String toString() {
+		return snapshot().toString();
+	}
+	
+	///////////////////////////////
+	
+	private void checkIndex( int bitIndex ) {
+		if( bitIndex < 0 || bitIndex >= length )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,209 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.Random;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A bit vector of length n with exactly k bits set, as for the 
+ * solutions of cardinality-constrained problems such as portfolio 
+ * selection or p-median. 
+ * 
+ * The weight is kept invariant by allowing only swap moves, which clear 
+ * one set bit and set one clear bit. Besides the bits themselves, the 
+ * positions of the set and of the clear bits are held in two arrays, 
+ * together with the location of each position in its array, so that a 
+ * swap, its undo, and the choice of a random swap are all constant-time.
+ */
+
+public final class FixedWeightBitVector {
+
+	/**
+	 * Receives the moves of a swap neighbourhood.
+	 */
+	@FunctionalInterface
+	public interface SwapConsumer {
+		void accept( int out, int in );
+	}
+	
+	///////////////////////////////
+	
+	private final BitVector bits;
+	/** the indices of the set bits, in no particular order */
+	private final int [] setPositions;
+	/** the indices of the clear bits, in no particular order */
+	private final int [] clearPositions;
+	/** the location of each bit index within setPositions or clearPositions */
+	private final int [] location;
+	
+	///////////////////////////////
+	
+	/**
+	 * Creates a vector with the bits of x, whose weight is therefore x.cardinality().
+	 */
+	public FixedWeightBitVector( BitVector x ) {
+		bits = new BitVector( x );
+		final int n = x.length();
+		final int k = x.cardinality();
+		setPositions = new int [ k ];
+		clearPositions = new int [ n - k ];
+		location = new int [ n ];
+		
+		int numSet = 0;
+		int numClear = 0;
+		for( int i=0; i<n; ++i ) {
+			if( x.get( i ) ) {
+				location[ i ] = numSet;
+				setPositions[ numSet++ ] = i;
+			}
+			else {
+				location[ i ] = numClear;
+				clearPositions[ numClear++ ] = i;
+			}
+		}
+		assert invariant();
+	}
+
+	/**
+	 * Creates a vector of length n with k bits set, chosen uniformly at random.
+	 */
+	public FixedWeightBitVector( int n, int k, Random random ) {
+		this( randomSubset( n, k, random ) );
+	}
+
+	public FixedWeightBitVector( FixedWeightBitVector rhs ) {
+		bits = new BitVector( rhs.bits );
+		setPositions = rhs.setPositions.clone();
+		clearPositions = rhs.clearPositions.clone();
+		location = rhs.location.clone();
+	}
+	
+	private static BitVector randomSubset( int n, int k, Random random ) {
+		if( k < 0 || k > n )
+			throw new IllegalArgumentException();
+		
+		// Floyd's algorithm for sampling without replacement:
+		BitVector result = new BitVector( n );
+		for( int j = n - k; j < n; ++j ) {
+			final int t = random.nextInt( j + 1 );
+			result.set( result.get( t ) ? j : t );
+		}
+		return result;
+	}
+	
+	///////////////////////////////
+	
+	public int length() { return location.length; }
+	
+	/**
+	 * @return the number of bits set, which is fixed
+	 */
+	public int weight() { return setPositions.length; }
+	
+	public boolean get( int bitIndex ) { return bits.get( bitIndex ); }
+	
+	/**
+	 * @return the index of the j-th set bit, for j in [0,weight()), in no particular order 
+	 */
+	public int setBit( int j ) { return setPositions[ j ]; }
+
+	/**
+	 * @return the index of the j-th clear bit, for j in [0,length()-weight()), in no particular order 
+	 */
+	public int clearBit( int j ) { return clearPositions[ j ]; }
+	
+	///////////////////////////////
+
+	/**
+	 * Clears bit out, which must be set, and sets bit in, which must be clear.
+	 * The move is undone by swap( in, out ).
+	 */
+	public void swap( int out, int in ) {
+		if( !bits.get( out ) || bits.get( in ) )
+			throw new IllegalArgumentException();
+		
+		final int outLocation = location[ out ];
+		final int inLocation = location[ in ];
+		setPositions[ outLocation ] = in;
+		clearPositions[ inLocation ] = out;
+		location[ in ] = outLocation;
+		location[ out ] = inLocation;
+		bits.clear( out );
+		bits.set( in );
+	}
+	
+	/**
+	 * Performs a swap chosen uniformly at random.
+	 * @return the move, as encoded by encode, from which it can be undone
+	 */
+	public long randomSwap( Random random ) {
+		if( weight() == 0 || weight() == length() )
+			throw new IllegalStateException();
+		
+		final int out = setPositions[ random.nextInt( setPositions.length ) ];
+		final int in = clearPositions[ random.nextInt( clearPositions.length ) ];
+		swap( out, in );
+		return encode( out, in );
+	}
+	
+	/**
+	 * Undoes a move returned by randomSwap.
+	 */
+	public void undo( long move ) {
+		swap( in( move ), out( move ) );
+	}
+	
+	public static long encode( int out, int in ) {
+		return ( (long)out << 32 ) | ( in & 0xFFFFFFFFL );
+	}
+	
+	public static int out( long move ) { return (int)( move >>> 32 ); }
+
+	public static int in( long move ) { return (int)move; }
+	
+	/**
+	 * Passes each of the weight() * ( length() - weight() ) swap moves to action.
+	 * The moves are not applied, and action must not modify this vector.
+	 */
+	public void forEachSwap( SwapConsumer action ) {
+		for( int i=0; i<setPositions.length; ++i ) {
+			final int out = setPositions[ i ];
+			for( int j=0; j<clearPositions.length; ++j )
+				action.accept( out, clearPositions[ j ] );
+		}
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * @return a copy of the bits
+	 */
+	public BitVector toBitVector() { return bits.clone(); }
+	
+	public long fingerprint64() { return bits.fingerprint64(); }
+	
+	public FixedWeightBitVector clone() { return new FixedWeightBitVector( this ); }
+	
+	public boolean equals( Object obj ) {
+		return obj instanceof FixedWeightBitVector 
+			&& bits.equals( ((FixedWeightBitVector)obj).bits );
+	}
+	
+	public int hashCode() { return bits.hashCode(); }
+
+	public String toString() { return bits.toString(); }
+	
+	public boolean invariant() {
+		if( bits.cardinality() != setPositions.length )
+			return false;
+		for( int j=0; j<setPositions.length; ++j )
+			if( !bits.get( setPositions[ j ] ) || location[ setPositions[ j ] ] != j )
+				return false;
+		for( int j=0; j<clearPositions.length; ++j )
+			if( bits.get( clearPositions[ j ] ) || location[ clearPositions[ j ] ] != j )
+				return false;
+		return true;
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
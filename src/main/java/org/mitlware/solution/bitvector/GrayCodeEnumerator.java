@@ -0,0 +1,142 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * Enumerates all 2^n bit vectors of length n in reflected binary Gray code
+ * order, so that each vector differs from its predecessor in exactly one
+ * bit, as for exhaustive search and landscape analysis of small problems.
+ *
+ * The vector of rank t is the Gray code t ^ ( t >>> 1 ), and the bit
+ * flipped between ranks t - 1 and t is the number of trailing zeros of t.
+ * A single vector is therefore updated by one flip per step, and the
+ * flipped index is passed to the consumer for O(1) delta evaluation.
+ * The ranks [0, 2^n) are split into disjoint contiguous sub-ranges for
+ * enumeration in parallel.
+ */
+
+public final class GrayCodeEnumerator {
+
+	/**
+	 * Receives each vector of an enumeration, together with the index of the
+	 * bit by which it differs from the previous one, or -1 for the first vector
+	 * of a range, which must be evaluated in full. The vector is live:
+	 * it must not be modified, and must be copied if it is to be retained.
+	 */
+	@FunctionalInterface
+	public interface FlipConsumer {
+		void accept( BitVector x, int flippedIndex );
+	}
+
+	///////////////////////////////
+
+	/** The largest n for which 2^n ranks fit in a long. */
+	public static final int MAX_LENGTH = 62;
+
+	private static final long MIN_RANGE = 1L << 12;
+	private static final int RANGES_PER_THREAD = 16;
+
+	private GrayCodeEnumerator() {}
+
+	///////////////////////////////
+
+	/**
+	 * Returns the vector of length n with the given Gray code rank.
+	 */
+	public static BitVector vector( int n, long rank ) {
+		checkLength( n );
+		if( rank < 0 || rank >= 1L << n )
+			throw new IllegalArgumentException();
+
+		return BitVector.fromLong( rank ^ ( rank >>> 1 ), n );
+	}
+
+	/**
+	 * Returns the Gray code rank of x, the inverse of vector.
+	 */
+	public static long rank( BitVector x ) {
+		checkLength( x.length() );
+		return x.length() == 0 ? 0L : BitVectorDecoder.grayToBinary( x.getWord( 0 ) );
+	}
+
+	///////////////////////////////
+
+	/**
+	 * Enumerates all vectors of length n.
+	 */
+	public static void enumerate( int n, FlipConsumer consumer ) {
+		checkLength( n );
+		enumerate( n, 0L, 1L << n, consumer );
+	}
+
+	/**
+	 * Enumerates the vectors of length n with ranks in [fromRank, toRank).
+	 */
+	public static void enumerate( int n, long fromRank, long toRank, FlipConsumer consumer ) {
+		checkLength( n );
+		if( fromRank < 0 || toRank > 1L << n || fromRank > toRank )
+			throw new IllegalArgumentException();
+		if( fromRank == toRank )
+			return;
+
+		BitVector x = vector( n, fromRank );
+		consumer.accept( x, -1 );
+		for( long t=fromRank + 1; t<toRank; ++t ) {
+			final int flipped = Long.numberOfTrailingZeros( t );
+			x.flip( flipped );
+			consumer.accept( x, flipped );
+		}
+	}
+
+	/**
+	 * Enumerates all vectors of length n in parallel on pool. The ranks are split
+	 * into contiguous ranges, each enumerated with its own consumer from consumers.
+	 * Returns the consumers in the order of their ranges, for their results to be combined.
+	 */
+	public static < C extends FlipConsumer > List< C > enumerate( int n, Supplier< C > consumers, ForkJoinPool pool ) {
+		checkLength( n );
+
+		final long total = 1L << n;
+		final long rangeSize = Math.max( MIN_RANGE, total / ( (long)pool.getParallelism() * RANGES_PER_THREAD ) );
+		final int numRanges = (int)( ( total + rangeSize - 1 ) / rangeSize );
+
+		List< C > result = new ArrayList< C >( numRanges );
+		RecursiveAction [] tasks = new RecursiveAction [ numRanges ];
+		for( int r=0; r<numRanges; ++r ) {
+			final C consumer = consumers.get();
+			final long from = r * rangeSize;
+			final long to = Math.min( total, from + rangeSize );
+			result.add( consumer );
+			tasks[ r ] = new RecursiveAction() {
+				@Override
+				protected void compute() {
+					enumerate( n, from, to, consumer );
+				}
+			};
+		}
+
+		pool.invoke( new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll( Arrays.asList( tasks ) );
+			}
+		} );
+		return result;
+	}
+
+	///////////////////////////////
+
+	private static void checkLength( int n ) {
+		if( n < 0 || n > MAX_LENGTH )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
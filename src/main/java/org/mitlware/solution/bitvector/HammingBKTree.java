@@ -0,0 +1,261 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * An index over a multiset of equal-length BitVectors, supporting 
+ * k-nearest-neighbour and radius queries under Hamming distance, 
+ * e.g. for novelty search archives.
+ * 
+ * This is a Burkhard-Keller tree: each child of a node is keyed by 
+ * its distance from that node, so by the triangle inequality a query 
+ * at distance d from a node need only descend into children with keys 
+ * in [ d - r, d + r ], where r is the current search radius. 
+ * 
+ * The index holds copies of the vectors added to it.
+ * Removal marks the entry as deleted, and the tree is rebuilt 
+ * once deleted entries outnumber live ones.
+ * Not thread-safe, since queries share a traversal stack.
+ * 
+ * @article{Burkhard:1973:SAB,
+ *   author = {Burkhard, W. A. and Keller, R. M.},
+ *   title = {Some Approaches to Best-match File Searching},
+ *   journal = {Commun. ACM},
+ *   volume = {16},
+ *   number = {4},
+ *   year = {1973},
+ *   pages = {230--236},
+ * }
+ */
+
+public final class HammingBKTree {
+
+	private static final class Node {
+		final BitVector point;
+		boolean deleted = false;
+		int numChildren = 0;
+		int [] childDistances = null;
+		Node [] children = null;
+		
+		Node( BitVector point ) { this.point = point; }
+		
+		Node child( int distance ) {
+			for( int i=0; i<numChildren; ++i )
+				if( childDistances[ i ] == distance )
+					return children[ i ];
+			return null;
+		}
+		
+		void addChild( int distance, Node child ) {
+			if( children == null ) {
+				childDistances = new int [ 2 ];
+				children = new Node [ 2 ];
+			}
+			else if( numChildren == children.length ) {
+				childDistances = Arrays.copyOf( childDistances, numChildren * 2 );
+				children = Arrays.copyOf( children, numChildren * 2 );
+			}
+			childDistances[ numChildren ] = distance;
+			children[ numChildren++ ] = child;
+		}
+	}
+	
+	///////////////////////////////
+	
+	private final int length;
+	private Node root = null;
+	private int size = 0;
+	private int numDeleted = 0;
+	
+	// traversal stack, reused between queries:
+	private Node [] stackNodes = new Node [ 64 ];
+	private int [] stackBounds = new int [ 64 ];
+	
+	///////////////////////////////
+	
+	public HammingBKTree( int length ) {
+		if( length < 0 )
+			throw new IllegalArgumentException();
+		
+		this.length = length;
+	}
+	
+	///////////////////////////////
+
+	public int length() { return length; }
+	
+	public int size() { return size; }
+	
+	public boolean isEmpty() { return size == 0; }
+	
+	public void add( BitVector x ) {
+		checkLength( x );
+		insert( new Node( x.clone() ) );
+		++size;
+	}
+	
+	/**
+	 * Removes one occurrence of x, if present.
+	 * @return true if x was present
+	 */
+	public boolean remove( BitVector x ) {
+		checkLength( x );
+		
+		for( Node node = root; node != null; ) {
+			final int d = BitVector.HammingDistance( x, node.point );
+			if( d == 0 && !node.deleted ) {
+				node.deleted = true;
+				--size;
+				if( ++numDeleted > size )
+					rebuild();
+				return true;
+			}
+			node = node.child( d );
+		}
+		return false;
+	}
+
+	public boolean contains( BitVector x ) {
+		checkLength( x );
+		
+		for( Node node = root; node != null; ) {
+			final int d = BitVector.HammingDistance( x, node.point );
+			if( d == 0 && !node.deleted )
+				return true;
+			node = node.child( d );
+		}
+		return false;
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * @return copies of all indexed vectors within Hamming distance radius of query
+	 */
+	public List< BitVector > withinRadius( BitVector query, int radius ) {
+		checkLength( query );
+		
+		List< BitVector > result = new ArrayList< BitVector >();
+		if( root == null )
+			return result;
+		
+		int top = push( 0, root, 0 );
+		while( top > 0 ) {
+			final Node node = stackNodes[ --top ];
+			final int d = BitVector.HammingDistance( query, node.point );
+			if( d <= radius && !node.deleted )
+				result.add( node.point.clone() );
+			
+			for( int i=0; i<node.numChildren; ++i )
+				if( Math.abs( node.childDistances[ i ] - d ) <= radius )
+					top = push( top, node.children[ i ], 0 );
+		}
+		return result;
+	}
+	
+	/**
+	 * @return copies of the (at most) k indexed vectors nearest to query, 
+	 * in order of increasing distance. Ties are broken arbitrarily.
+	 */
+	public List< BitVector > nearest( BitVector query, int k ) {
+		checkLength( query );
+		if( k < 0 )
+			throw new IllegalArgumentException();
+		
+		// the best so far, in increasing order of distance:
+		final Node [] best = new Node [ k ];
+		final int [] bestDistances = new int [ k ];
+		int numBest = 0;
+		
+		int top = root == null || k == 0 ? 0 : push( 0, root, 0 );
+		while( top > 0 ) {
+			final Node node = stackNodes[ --top ];
+			final int lowerBound = stackBounds[ top ];
+			int radius = numBest < k ? Integer.MAX_VALUE : bestDistances[ k - 1 ];
+			if( lowerBound > radius )
+				continue;
+			
+			final int d = BitVector.HammingDistance( query, node.point );
+			if( !node.deleted && ( numBest < k || d < radius ) ) {
+				int i = numBest < k ? numBest++ : k - 1;
+				for( ; i > 0 && bestDistances[ i - 1 ] > d; --i ) {
+					best[ i ] = best[ i - 1 ];
+					bestDistances[ i ] = bestDistances[ i - 1 ];
+				}
+				best[ i ] = node;
+				bestDistances[ i ] = d;
+				radius = numBest < k ? Integer.MAX_VALUE : bestDistances[ k - 1 ];
+			}
+			
+			for( int i=0; i<node.numChildren; ++i ) {
+				final int bound = Math.abs( node.childDistances[ i ] - d );
+				if( bound <= radius )
+					top = push( top, node.children[ i ], bound );
+			}
+		}
+		
+		List< BitVector > result = new ArrayList< BitVector >( numBest );
+		for( int i=0; i<numBest; ++i )
+			result.add( best[ i ].point.clone() );
+		return result;
+	}
+	
+	///////////////////////////////
+	
+	private void insert( Node node ) {
+		if( root == null ) {
+			root = node;
+			return;
+		}
+		
+		for( Node parent = root; ; ) {
+			final int d = BitVector.HammingDistance( node.point, parent.point );
+			final Node child = parent.child( d );
+			if( child == null ) {
+				parent.addChild( d, node );
+				return;
+			}
+			parent = child;
+		}
+	}
+	
+	private void rebuild() {
+		List< Node > live = new ArrayList< Node >( size );
+		if( root != null ) {
+			int top = push( 0, root, 0 );
+			while( top > 0 ) {
+				final Node node = stackNodes[ --top ];
+				if( !node.deleted )
+					live.add( new Node( node.point ) );
+				for( int i=0; i<node.numChildren; ++i )
+					top = push( top, node.children[ i ], 0 );
+			}
+		}
+		
+		root = null;
+		numDeleted = 0;
+		for( Node node : live )
+			insert( node );
+	}
+	
+	private int push( int top, Node node, int bound ) {
+		if( top == stackNodes.length ) {
+			stackNodes = Arrays.copyOf( stackNodes, top * 2 );
+			stackBounds = Arrays.copyOf( stackBounds, top * 2 );
+		}
+		stackNodes[ top ] = node;
+		stackBounds[ top ] = bound;
+		return top + 1;
+	}
+	
+	private void checkLength( BitVector x ) {
+		if( x.length() != length )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,157 @@
+package org.mitlware.solution.bitvector;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * Samples BitVectors in which bit i is independently set with 
+ * probability p[ i ], as required by univariate estimation-of-distribution 
+ * algorithms such as UMDA, PBIL and the compact GA.
+ * 
+ * Rather than drawing a uniform variate per bit, 64 bits are 
+ * decided at once: each probability is held as a 32-bit fixed-point 
+ * threshold, stored bit-sliced, and a 32-bit uniform variate per position 
+ * is compared against it one binary digit at a time, starting from the most 
+ * significant, with one random long supplying that digit for all 64 positions. 
+ * Since every random digit settles each remaining comparison with 
+ * probability 1/2, a word typically needs around 8 random longs rather than 64. 
+ * Positions whose probability is exactly 0 or 1 cost nothing, and 
+ * neither does a word in which every probability is 0 or 1.
+ * 
+ * Probabilities are quantized to multiples of 2^-32.
+ */
+
+public final class MarginalSampler {
+
+	private static final int LEVELS = 32;
+	private static final double SCALE = 0x1.0p32;
+	
+	private final int length;
+	
+	/**
+	 * thresholds[ w * LEVELS + k ] holds, for each bit of word w, 
+	 * binary digit ( LEVELS - 1 - k ) of its fixed-point threshold.
+	 */
+	private final long [] thresholds;
+	private final long [] ones;
+	private final long [] uncertain;
+	
+	///////////////////////////////
+	
+	public MarginalSampler( double [] probabilities ) {
+		length = probabilities.length;
+		final int numWords = ( length + Long.SIZE - 1 ) / Long.SIZE;
+		thresholds = new long [ numWords * LEVELS ];
+		ones = new long [ numWords ];
+		uncertain = new long [ numWords ];
+		
+		for( int i=0; i<length; ++i )
+			setProbability( i, probabilities[ i ] );
+	}
+	
+	///////////////////////////////
+	
+	public int length() { return length; }
+	
+	public double getProbability( int index ) {
+		checkIndex( index );
+		
+		final int w = index / Long.SIZE;
+		final long bit = 1L << index;
+		if( ( uncertain[ w ] & bit ) == 0L )
+			return ( ones[ w ] & bit ) != 0L ? 1.0 : 0.0;
+		
+		long threshold = 0L;
+		for( int k=0; k<LEVELS; ++k ) 
+			if( ( thresholds[ w * LEVELS + k ] & bit ) != 0L )
+				threshold |= 1L << ( LEVELS - 1 - k );
+		
+		return threshold / SCALE;
+	}
+	
+	/**
+	 * Changes the probability of a single position, in time independent of length.
+	 */
+	public void setProbability( int index, double probability ) {
+		checkIndex( index );
+		if( !( probability >= 0.0 && probability <= 1.0 ) )
+			throw new IllegalArgumentException();
+		
+		final int w = index / Long.SIZE;
+		final long bit = 1L << index;
+		final long threshold = Math.round( probability * SCALE );
+		
+		ones[ w ] &= ~bit;
+		uncertain[ w ] &= ~bit;
+		if( threshold >= (long)SCALE )
+			ones[ w ] |= bit;
+		else if( threshold > 0L )
+			uncertain[ w ] |= bit;
+		
+		for( int k=0; k<LEVELS; ++k ) {
+			if( ( threshold & ( 1L << ( LEVELS - 1 - k ) ) ) != 0L )
+				thresholds[ w * LEVELS + k ] |= bit;
+			else
+				thresholds[ w * LEVELS + k ] &= ~bit;
+		}
+	}
+	
+	///////////////////////////////
+	
+	public void sample( Random random, BitVector dest ) {
+		sample( (LongSupplier)random::nextLong, dest );
+	}
+
+	public void sample( SplittableRandom random, BitVector dest ) {
+		sample( (LongSupplier)random::nextLong, dest );
+	}
+	
+	/**
+	 * Overwrites every row of population with a new sample.
+	 * Row i is sampled from its own stream, split from random in row order, 
+	 * so the result is the same whether or not sampling runs in parallel.  
+	 */
+	public void sample( SplittableRandom random, BitMatrix population, boolean parallel ) {
+		if( population.numColumns() != length )
+			throw new IllegalArgumentException();
+		
+		final SplittableRandom [] streams = new SplittableRandom [ population.numRows() ];
+		for( int i=0; i<streams.length; ++i )
+			streams[ i ] = random.split();
+		
+		IntStream rows = IntStream.range( 0, streams.length );
+		if( parallel )
+			rows = rows.parallel();
+		rows.forEach( i -> sample( streams[ i ], population.row( i ) ) );
+	}
+	
+	public void sample( LongSupplier random, BitVector dest ) {
+		if( dest.length() != length )
+			throw new IllegalArgumentException();
+		
+		for( int w=0; w<ones.length; ++w ) {
+			long undecided = uncertain[ w ];
+			long less = 0L;
+			for( int k = w * LEVELS, end = k + LEVELS; undecided != 0L && k < end; ++k ) {
+				final long r = random.getAsLong();
+				final long t = thresholds[ k ];
+				less |= undecided & ~r & t;
+				undecided &= ~( r ^ t );
+			}
+			dest.setWord( w, ones[ w ] | less );
+		}
+	}
+	
+	///////////////////////////////
+	
+	private void checkIndex( int index ) {
+		if( index < 0 || index >= length )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,312 @@
+package org.mitlware.solution.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import org.mitlware.solution.util.SplitMix64;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A thread-safe, size-bounded memo of fitness values.
+ * 
+ * Solutions are keyed by a 64-bit fingerprint (e.g. BitVector::fingerprint64 
+ * or ArrayForm::fingerprint64) rather than retained, so each entry costs a long, 
+ * a double and a few ints. Two distinct solutions with the same fingerprint 
+ * share a fitness value, which for a good 64-bit hash and a table of n entries 
+ * happens with probability around n/2^64 per lookup.
+ * 
+ * The table is split into independently locked segments, selected 
+ * by fingerprint. Fitness is computed outside any lock, so concurrent 
+ * misses on the same solution may both evaluate it. 
+ */
+
+public final class FitnessCache< S > 
+implements ToDoubleFunction< S > {
+
+	public enum Eviction { 
+		/** Evict the least recently used entry. */
+		LRU, 
+		/** Evict the first entry without a reference bit, as found by a sweeping hand. */ 
+		CLOCK 
+	}
+	
+	private final ToLongFunction< ? super S > fingerprint;
+	private final ToDoubleFunction< ? super S > fitness;
+	private final Segment [] segments;
+	private final int segmentShift;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	
+	///////////////////////////////
+
+	public FitnessCache( int capacity, Eviction eviction, 
+		ToLongFunction< ? super S > fingerprint, ToDoubleFunction< ? super S > fitness ) {
+		this( capacity, eviction, 16, fingerprint, fitness );
+	}
+	
+	/**
+	 * @param concurrencyLevel the number of segments, rounded up to a power of 2 
+	 */
+	public FitnessCache( int capacity, Eviction eviction, int concurrencyLevel, 
+		ToLongFunction< ? super S > fingerprint, ToDoubleFunction< ? super S > fitness ) {
+		if( capacity < 1 || concurrencyLevel < 1 || concurrencyLevel > ( 1 << 16 ) )
+			throw new IllegalArgumentException();
+
+		this.fingerprint = fingerprint;
+		this.fitness = fitness;
+		
+		final int concurrency = concurrencyLevel == 1 ? 1 : Integer.highestOneBit( concurrencyLevel - 1 ) << 1;
+		final int numSegments = Math.min( Integer.highestOneBit( capacity ), concurrency );
+		segmentShift = Long.SIZE - Integer.numberOfTrailingZeros( numSegments );
+		segments = new Segment [ numSegments ];
+		final int segmentCapacity = ( capacity + numSegments - 1 ) / numSegments;
+		for( int i=0; i<numSegments; ++i )
+			segments[ i ] = new Segment( segmentCapacity, eviction );
+	}
+
+	///////////////////////////////
+	
+	/**
+	 * @return the cached fitness of solution, evaluating and caching it on a miss. 
+	 */
+	@Override
+	public double applyAsDouble( S solution ) {
+		final long key = fingerprint.applyAsLong( solution );
+		final Segment segment = segmentFor( key );
+		synchronized( segment ) {
+			final int slot = segment.find( key );
+			if( slot >= 0 ) {
+				hits.increment();
+				return segment.hit( slot );
+			}
+		}
+		
+		misses.increment();
+		final double result = fitness.applyAsDouble( solution );
+		synchronized( segment ) {
+			if( segment.put( key, result ) )
+				evictions.increment();
+		}
+		return result;
+	}
+
+	public void clear() {
+		for( Segment s : segments ) {
+			synchronized( s ) {
+				s.clear();
+			}
+		}
+	}
+	
+	public int size() {
+		int result = 0;
+		for( Segment s : segments ) {
+			synchronized( s ) {
+				result += s.size;
+			}
+		}
+		return result;
+	}
+
+	public int capacity() { return segments.length * segments[ 0 ].keys.length; }
+	
+	public long hits() { return hits.sum(); }
+	
+	public long misses() { return misses.sum(); }
+
+	public long evictions() { return evictions.sum(); }
+	
+	public String toString() {
+		return "FitnessCache(size: " + size() + " hits: " + hits() + " misses: " + misses() 
+			+ " evictions: " + evictions() + ")";
+	}
+	
+	///////////////////////////////
+	
+	/*
+	 * Keys are mixed, so that fingerprints with structure in 
+	 * their low bits still spread over segments and slots. 
+	 */
+	
+	private Segment segmentFor( long key ) {
+		return segments.length == 1 ? segments[ 0 ] : segments[ (int)( SplitMix64.mix( key ) >>> segmentShift ) ];
+	}
+	
+	///////////////////////////////
+
+	/**
+	 * A fixed number of entry slots, with a linear-probing index from key to 
+	 * slot. LRU order is kept as a doubly-linked list threaded through the 
+	 * slots, CLOCK state as a reference bit per slot.
+	 * All access is under the segment's monitor. 
+	 */
+	
+	private static final class Segment {
+		private final Eviction eviction;
+		
+		private final long [] keys;
+		private final double [] values;
+		
+		/** slot + 1, or 0 for empty */
+		private final int [] index;
+		private final int indexMask;
+		private int size = 0;
+
+		// LRU:
+		private final int [] prev;
+		private final int [] next;
+		private int head = -1;
+		private int tail = -1;
+		
+		// CLOCK:
+		private final boolean [] referenced;
+		private int hand = 0;
+		
+		///////////////////////////
+		
+		Segment( int capacity, Eviction eviction ) {
+			this.eviction = eviction;
+			keys = new long [ capacity ];
+			values = new double [ capacity ];
+			index = new int [ Integer.highestOneBit( capacity ) << 2 ];
+			indexMask = index.length - 1;
+			
+			final boolean lru = eviction == Eviction.LRU; 
+			prev = lru ? new int [ capacity ] : null;
+			next = lru ? new int [ capacity ] : null;
+			referenced = lru ? null : new boolean [ capacity ];
+		}
+
+		///////////////////////////
+		
+		int find( long key ) {
+			for( int i = home( key ); ; i = ( i + 1 ) & indexMask ) {
+				final int slot = index[ i ] - 1;
+				if( slot < 0 )
+					return -1;
+				if( keys[ slot ] == key )
+					return slot;
+			}
+		}
+		
+		double hit( int slot ) {
+			if( eviction == Eviction.LRU ) {
+				unlink( slot );
+				linkAtHead( slot );
+			}
+			else
+				referenced[ slot ] = true;
+			
+			return values[ slot ];
+		}
+		
+		/**
+		 * @return true if an entry was evicted to make room
+		 */
+		boolean put( long key, double value ) {
+			int slot = find( key );
+			if( slot >= 0 ) {
+				values[ slot ] = value;
+				return false;
+			}
+			
+			boolean evicted = false;
+			if( size < keys.length )
+				slot = size++;
+			else {
+				slot = victim();
+				removeFromIndex( keys[ slot ] );
+				evicted = true;
+			}
+
+			keys[ slot ] = key;
+			values[ slot ] = value;
+			int i = home( key );
+			while( index[ i ] != 0 )
+				i = ( i + 1 ) & indexMask;
+			index[ i ] = slot + 1;
+			
+			if( eviction == Eviction.LRU )
+				linkAtHead( slot );
+			else
+				referenced[ slot ] = false;
+			
+			return evicted;
+		}
+
+		void clear() {
+			Arrays.fill( index, 0 );
+			size = 0;
+			head = tail = -1;
+			hand = 0;
+		}
+		
+		///////////////////////////
+
+		private int home( long key ) {
+			return (int)SplitMix64.mix( key ) & indexMask;
+		}
+		
+		private int victim() {
+			if( eviction == Eviction.LRU ) {
+				final int result = tail;
+				unlink( result );
+				return result;
+			}
+			
+			for( ; ; hand = ( hand + 1 ) % keys.length ) {
+				if( referenced[ hand ] )
+					referenced[ hand ] = false;
+				else {
+					final int result = hand;
+					hand = ( hand + 1 ) % keys.length;
+					return result;
+				}
+			}
+		}
+		
+		/**
+		 * Backward-shift deletion, which keeps every probe sequence unbroken.
+		 */
+		private void removeFromIndex( long key ) {
+			int i = home( key );
+			while( keys[ index[ i ] - 1 ] != key )
+				i = ( i + 1 ) & indexMask;
+			
+			for( int j = ( i + 1 ) & indexMask; index[ j ] != 0; j = ( j + 1 ) & indexMask ) {
+				final int k = home( keys[ index[ j ] - 1 ] );
+				// move the entry at j back to i unless its home lies cyclically in (i,j]:
+				final boolean stays = i <= j ? ( i < k && k <= j ) : ( i < k || k <= j );
+				if( !stays ) {
+					index[ i ] = index[ j ];
+					i = j;
+				}
+			}
+			index[ i ] = 0;
+		}
+		
+		private void unlink( int slot ) {
+			final int p = prev[ slot ];
+			final int n = next[ slot ];
+			if( p >= 0 ) next[ p ] = n; else head = n;
+			if( n >= 0 ) prev[ n ] = p; else tail = p;
+		}
+
+		private void linkAtHead( int slot ) {
+			prev[ slot ] = -1;
+			next[ slot ] = head;
+			if( head >= 0 )
+				prev[ head ] = slot;
+			head = slot;
+			if( tail < 0 )
+				tail = slot;
+		}
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,181 @@
+package org.mitlware.solution.distance;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToDoubleBiFunction;
+import java.util.function.ToIntBiFunction;
+import java.util.stream.IntStream;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * Pairwise distances over a population, e.g. for diversity measures, 
+ * fitness sharing or clustering. Suitable metrics include
+ * BitVector::HammingDistance, BitVector::JaccardDistance and 
+ * ArrayForm::hammingDistance. ArrayForm.kendallTauDistance returns 
+ * a long, so is passed as ( a, b ) -> (int)a.kendallTauDistance( b ), 
+ * which cannot overflow for permutations of up to 65536 elements.
+ * 
+ * Since distances are symmetric and vanish on the diagonal, only the 
+ * upper triangle is stored, packed row by row: the distance between 
+ * i and j, for i < j, is at packedIndex( size, i, j ).
+ * 
+ * The triangle is computed in square tiles of TILE x TILE pairs, 
+ * so that the solutions involved in a tile stay in cache while it is 
+ * computed, and the tiles are distributed over a fork-join pool.
+ */
+
+public final class DistanceMatrix {
+	
+	static final int TILE = 64;
+	
+	private final int size;
+	private final int [] distances;
+	
+	///////////////////////////////
+	
+	private DistanceMatrix( int size, int [] distances ) {
+		this.size = size;
+		this.distances = distances;
+	}
+
+	public static < T > DistanceMatrix compute( List< ? extends T > population, 
+		ToIntBiFunction< ? super T, ? super T > metric, boolean parallel ) {
+		return compute( population, metric, parallel ? ForkJoinPool.commonPool() : null ); 
+	}
+	
+	/**
+	 * @param pool the pool in which to compute the tiles, or null to compute them in this thread
+	 */
+	public static < T > DistanceMatrix compute( List< ? extends T > population, 
+		ToIntBiFunction< ? super T, ? super T > metric, ForkJoinPool pool ) {
+		final int n = population.size();
+		final int [] result = new int [ checkedTriangleSize( n ) ];
+		forEachTile( n, pool, ( i0, j0 ) -> {
+			final int iEnd = Math.min( i0 + TILE, n );
+			final int jEnd = Math.min( j0 + TILE, n );
+			for( int i=i0; i<iEnd; ++i ) {
+				final T a = population.get( i );
+				final int rowBase = packedIndex( n, i, 0 );
+				for( int j=Math.max( j0, i + 1 ); j<jEnd; ++j )
+					result[ rowBase + j ] = metric.applyAsInt( a, population.get( j ) );
+			}
+		} );
+		return new DistanceMatrix( n, result );
+	}
+
+	/**
+	 * @return the packed upper triangle of the real-valued distances of population
+	 */
+	public static < T > double [] computeTriangle( List< ? extends T > population, 
+		ToDoubleBiFunction< ? super T, ? super T > metric, boolean parallel ) {
+		final int n = population.size();
+		final double [] result = new double [ checkedTriangleSize( n ) ];
+		forEachTile( n, parallel ? ForkJoinPool.commonPool() : null, ( i0, j0 ) -> {
+			final int iEnd = Math.min( i0 + TILE, n );
+			final int jEnd = Math.min( j0 + TILE, n );
+			for( int i=i0; i<iEnd; ++i ) {
+				final T a = population.get( i );
+				final int rowBase = packedIndex( n, i, 0 );
+				for( int j=Math.max( j0, i + 1 ); j<jEnd; ++j )
+					result[ rowBase + j ] = metric.applyAsDouble( a, population.get( j ) );
+			}
+		} );
+		return result;
+	}
+	
+	/**
+	 * For populations too large to hold the triangle: passes each full row 
+	 * of the matrix in turn to action, together with its index. The row array 
+	 * is reused between calls, so must not be retained by action.
+	 * Each pair is evaluated twice, once for each of its rows.
+	 */
+	public static < T > void forEachRow( List< ? extends T > population, 
+		ToIntBiFunction< ? super T, ? super T > metric, ObjIntConsumer< int [] > action ) {
+		final int n = population.size();
+		final int [] row = new int [ n ];
+		for( int i=0; i<n; ++i ) {
+			final T a = population.get( i );
+			for( int j=0; j<n; ++j )
+				row[ j ] = i == j ? 0 : metric.applyAsInt( a, population.get( j ) );
+			action.accept( row, i );
+		}
+	}
+
+	///////////////////////////////
+	
+	public int size() { return size; }
+	
+	public int get( int i, int j ) {
+		if( i < 0 || i >= size || j < 0 || j >= size )
+			throw new IllegalArgumentException();
+		
+		if( i == j )
+			return 0;
+		else if( i < j )
+			return distances[ packedIndex( size, i, j ) ];
+		else
+			return distances[ packedIndex( size, j, i ) ];
+	}
+
+	/**
+	 * @return the sum of the distances from i to every member of the population
+	 */
+	public long rowSum( int i ) {
+		long result = 0;
+		for( int j=0; j<size; ++j )
+			result += get( i, j );
+		return result;
+	}
+	
+	/**
+	 * @return the packed upper triangle, which is not copied
+	 */
+	public int [] triangle() { return distances; }
+
+	///////////////////////////////
+	
+	/**
+	 * @return the position of the pair (i,j), i < j, in the packed upper triangle of an n x n matrix
+	 */
+	public static int packedIndex( int n, int i, int j ) {
+		return (int)( (long)i * ( 2 * n - i - 1 ) / 2 ) + ( j - i - 1 );
+	}
+
+	private static int checkedTriangleSize( int n ) {
+		final long result = (long)n * ( n - 1 ) / 2;
+		if( result > Integer.MAX_VALUE - 8 )
+			throw new IllegalArgumentException( "Population too large for a packed triangle: use forEachRow" );
+		return (int)result;
+	}
+	
+	@FunctionalInterface
+	private interface TileAction {
+		void apply( int i0, int j0 );
+	}
+	
+	private static void forEachTile( int n, ForkJoinPool pool, TileAction action ) {
+		final int numTiles = ( n + TILE - 1 ) / TILE;
+		// tile pairs (I,J) with I <= J, enumerated row by row:
+		final int numTilePairs = numTiles * ( numTiles + 1 ) / 2;
+		final int [] tileRow = new int [ numTilePairs ];
+		final int [] tileColumn = new int [ numTilePairs ];
+		for( int I=0, k=0; I<numTiles; ++I )
+			for( int J=I; J<numTiles; ++J, ++k ) {
+				tileRow[ k ] = I;
+				tileColumn[ k ] = J;
+			}
+		
+		if( pool == null ) {
+			for( int k=0; k<numTilePairs; ++k )
+				action.apply( tileRow[ k ] * TILE, tileColumn[ k ] * TILE );
+		}
+		else {
+			pool.submit( () -> IntStream.range( 0, numTilePairs ).parallel().forEach( 
+				k -> action.apply( tileRow[ k ] * TILE, tileColumn[ k ] * TILE ) ) ).join();
+		}
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -3,6 +3,7 @@
 
 package org.mitlware.solution.permutation;
 
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashSet;
@@ -85,6 +86,13 @@ implements Permutation, Comparable< ArrayForm > {
 	///////////////////////////////
 	
 	public int [] toArray() { return perm_.clone();	}
+
+	public void toArray( int [] dest ) {
+		if( dest.length != perm_.length )
+			throw new IllegalArgumentException();
+		
+		System.arraycopy( perm_, 0, dest, 0, perm_.length );
+	}
 	
 	public void transpose( int index1, int index2 ) {
 		if( index1 < 0 || index1 >= size() )
@@ -198,6 +206,42 @@ implements Permutation, Comparable< ArrayForm > {
 
 		return ArrayUtilsUnchecked.hammingDistance( perm_, other.perm_ );
 	}
+
+	/**
+	 * @return the number of pairs of elements ordered differently by this and other
+	 */
+	public long kendallTauDistance( ArrayForm other ) {
+		if( size() != other.size() )
+			throw new IllegalArgumentException();
+
+		return ArrayUtilsUnchecked.kendallTauDistance( perm_, other.perm_ );
+	}
+	
+	///////////////////////////////
+	
+	/**
+	 * @return the rank of this permutation in [0, size()!), for size() <= 20
+	 * @see PermutationRanking
+	 */
+	public long rank( PermutationRanking.Order order ) {
+		return PermutationRanking.rank( perm_, order );
+	}
+
+	/**
+	 * @return the rank of this permutation in [0, size()!)
+	 * @see PermutationRanking
+	 */
+	public BigInteger bigRank( PermutationRanking.Order order ) {
+		return PermutationRanking.bigRank( perm_, order );
+	}
+	
+	public static ArrayForm unrank( int n, long rank, PermutationRanking.Order order ) {
+		return new ArrayForm( PermutationRanking.unrank( n, rank, order ) );
+	}
+
+	public static ArrayForm unrank( int n, BigInteger rank, PermutationRanking.Order order ) {
+		return new ArrayForm( PermutationRanking.unrank( n, rank, order ) );
+	}
 	
 	///////////////////////////////
 	
@@ -214,6 +258,13 @@ implements Permutation, Comparable< ArrayForm > {
 	public int hashCode() {
 		return Arrays.hashCode( perm_ );
 	}
+
+	/**
+	 * @return a 64-bit hash of this permutation, suitable as a compact key for very large tables.
+	 */
+	public long fingerprint64() {
+		return ArrayUtilsUnchecked.fingerprint( perm_ );
+	}
 	
 	public boolean equals( Object rhs ) {
 		return rhs instanceof ArrayForm 
@@ -252,36 +303,56 @@ implements Permutation, Comparable< ArrayForm > {
 		assert invariant();
 	}
 	
+	/**
+	 * The algebra below works in place and allocates nothing, apart from
+	 * the in-place forms of commutatorWith and power. The forms that take
+	 * dest leave this unchanged, unless dest is this, and overwrite dest.
+	 */
+	
 	public void multiply( ArrayForm other )	{
-		if( size() != other.size() )
-			throw new IllegalArgumentException();
-		
-		perm_ = ArrayUtilsUnchecked.multiply( perm_, other.perm_ );
-		assert invariant();
+		multiply( other, this );
+	}
+
+	public void multiply( ArrayForm other, ArrayForm dest )	{
+		checkSizes( other, dest );
+		ArrayUtilsUnchecked.multiply( perm_, other.perm_, dest.perm_ );
+		assert dest.invariant();
 	}
 
 	public void divide( ArrayForm other ) {
-		if( size() != other.size() )
-			throw new IllegalArgumentException();
-		
-		perm_ = ArrayUtilsUnchecked.divide( perm_, other.perm_ );
-		assert invariant();
+		divide( other, this );
+	}
+
+	public void divide( ArrayForm other, ArrayForm dest ) {
+		checkSizes( other, dest );
+		ArrayUtilsUnchecked.divide( perm_, other.perm_, dest.perm_ );
+		assert dest.invariant();
 	}
 
 	public void mod( ArrayForm other ) {
-		if( size() != other.size() )
-			throw new IllegalArgumentException();
-		
-		perm_ = ArrayUtilsUnchecked.mod( perm_, other.perm_ );
-		assert invariant();
+		mod( other, this );
+	}
+
+	public void mod( ArrayForm other, ArrayForm dest ) {
+		checkSizes( other, dest );
+		ArrayUtilsUnchecked.mod( perm_, other.perm_, dest.perm_ );
+		assert dest.invariant();
 	}
 
 	public void conjugate( ArrayForm other ) {
-		if( size() != other.size() )
+		conjugate( other, this );
+	}
+
+	/**
+	 * dest may be this, but not other unless other is also this.
+	 */
+	public void conjugate( ArrayForm other, ArrayForm dest ) {
+		checkSizes( other, dest );
+		if( dest == other && other != this )
 			throw new IllegalArgumentException();
 		
-		perm_ = ArrayUtilsUnchecked.conjugate( perm_, other.perm_ );
-		assert invariant();
+		ArrayUtilsUnchecked.conjugate( perm_, other.perm_, dest.perm_ );
+		assert dest.invariant();
 	}
 
 	public void commutatorWith( ArrayForm other ) {
@@ -292,17 +363,55 @@ implements Permutation, Comparable< ArrayForm > {
 		assert invariant();
 	}
 
+	/**
+	 * dest must be neither this nor other.
+	 */
+	public void commutatorWith( ArrayForm other, ArrayForm dest ) {
+		checkSizes( other, dest );
+		if( dest == this || dest == other )
+			throw new IllegalArgumentException();
+		
+		ArrayUtilsUnchecked.commutator( perm_, other.perm_, dest.perm_ );
+		assert dest.invariant();
+	}
+
 	public void power( int n ) {
 		perm_ = ArrayUtilsUnchecked.power( perm_, n );
 		assert invariant();
 	}
 
+	/**
+	 * dest must not be this. Takes O(size()) time for any n.
+	 */
+	public void power( int n, ArrayForm dest ) {
+		checkSizes( this, dest );
+		if( dest == this )
+			throw new IllegalArgumentException();
+		
+		ArrayUtilsUnchecked.power( perm_, n, dest.perm_ );
+		assert dest.invariant();
+	}
+
 	//////////////////////////////
 
 	public void invert() {
-		perm_ = ArrayUtilsUnchecked.invert( perm_ );
+		ArrayUtilsUnchecked.invertInPlace( perm_ );
 		assert invariant();
 	}
+
+	public void invert( ArrayForm dest ) {
+		checkSizes( this, dest );
+		if( dest != this )
+			System.arraycopy( perm_, 0, dest.perm_, 0, perm_.length );
+		
+		ArrayUtilsUnchecked.invertInPlace( dest.perm_ );
+		assert dest.invariant();
+	}
+
+	private void checkSizes( ArrayForm other, ArrayForm dest ) {
+		if( size() != other.size() || size() != dest.size() )
+			throw new IllegalArgumentException();
+	}
 }
 
 // End ///////////////////////////////////////////////////////////////
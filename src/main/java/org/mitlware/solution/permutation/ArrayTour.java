@@ -0,0 +1,122 @@
+package org.mitlware.solution.permutation;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A Tour held as an array of cities together with its inverse, 
+ * so that positionOf, next, prev and between are O(1).
+ *
+ * A path is reversed in place, by reversing its complement whenever that 
+ * is shorter, so no move touches more than n / 2 cities or allocates. 
+ * For very large n, see TwoLevelTour. 
+ */
+
+public final class ArrayTour implements Tour {
+
+	private final int [] tour;
+	private final int [] position;
+
+	///////////////////////////////
+
+	/**
+	 * The tour that visits the cities in the order perm.get( 0 ), perm.get( 1 ), ...
+	 */
+	public ArrayTour( ArrayForm perm ) {
+		tour = perm.toArray();
+		position = ArrayUtilsUnchecked.invert( tour );
+	}
+
+	public ArrayTour( ArrayTour rhs ) {
+		tour = rhs.tour.clone();
+		position = rhs.position.clone();
+	}
+
+	///////////////////////////////
+
+	@Override
+	public int size() { return tour.length; }
+
+	public int city( int position ) { return tour[ position ]; }
+
+	public int positionOf( int city ) { return position[ city ]; }
+
+	@Override
+	public int next( int city ) {
+		final int i = position[ city ] + 1;
+		return tour[ i == tour.length ? 0 : i ];
+	}
+
+	@Override
+	public int prev( int city ) {
+		final int i = position[ city ];
+		return tour[ ( i == 0 ? tour.length : i ) - 1 ];
+	}
+
+	@Override
+	public boolean between( int a, int b, int c ) {
+		final int n = tour.length;
+		final int i = position[ a ];
+		int j = position[ b ] - i;
+		int k = position[ c ] - i;
+		if( j < 0 ) j += n;
+		if( k < 0 ) k += n;
+		return j <= k;
+	}
+
+	@Override
+	public ArrayForm toArrayForm() {
+		return new ArrayForm( tour );
+	}
+
+	@Override
+	public double length( Distance d ) {
+		double result = 0.0;
+		for( int i=0; i<tour.length; ++i )
+			result += d.distance( tour[ i ], tour[ i + 1 == tour.length ? 0 : i + 1 ] );
+
+		return result;
+	}
+
+	public boolean invariant() {
+		if( !ArrayUtilsUnchecked.isPermutation( tour ) )
+			return false;
+		for( int i=0; i<tour.length; ++i )
+			if( position[ tour[ i ] ] != i )
+				return false;
+
+		return true;
+	}
+
+	///////////////////////////////
+
+	@Override
+	public void reversePath( int from, int to ) {
+		final int n = tour.length;
+		int i = position[ from ];
+		int j = position[ to ];
+		int inner = j - i;
+		if( inner < 0 )
+			inner += n;
+		++inner;
+
+		if( 2 * inner > n ) {
+			final int temp = i;
+			i = j + 1 == n ? 0 : j + 1;
+			j = temp == 0 ? n - 1 : temp - 1;
+			inner = n - inner;
+		}
+
+		for( int swaps=inner / 2; swaps>0; --swaps ) {
+			final int ci = tour[ i ];
+			final int cj = tour[ j ];
+			tour[ i ] = cj;
+			position[ cj ] = i;
+			tour[ j ] = ci;
+			position[ ci ] = j;
+			if( ++i == n ) i = 0;
+			if( --j < 0 ) j = n - 1;
+		}
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -64,12 +64,12 @@ package org.mitlware.solution.permutation;
 
 import org.mitlware.support.util.*;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.List;
 import java.util.Random;
 
 import org.mitlware.Diag;
+import org.mitlware.solution.util.SplitMix64;
 
 //////////////////////////////////////////////////////////////////////
 
@@ -110,19 +110,101 @@ final class ArrayUtilsUnchecked {
 		assert( isPermutation( result ) );
 		return result;
 	}
-	
+
+	/**
+	 * Writes multiply( p1, p2 ) into dest, which may be p1 or p2.
+	 */
+	static void multiply( int [] p1, int [] p2, int [] dest ) {
+		assert( isPermutation( p1 ) );
+		assert( isPermutation( p2 ) );
+		assert( p1.length == p2.length && dest.length == p1.length );
+
+		if( dest == p2 ) {
+			if( p1 == p2 ) {
+				square( dest );
+				return;
+			}
+			gather( dest, p1 );
+		}
+		else {
+			for( int i=0; i<p1.length; ++i )
+				dest[ i ] = p2[ p1[ i ] ];
+		}
+		assert( isPermutation( dest ) );
+	}
+
 	///////////////////////////////
 	
 	public static int []
 	divide( int [] p1, int [] p2 ) {
-		return multiply( p1, invert( p2 ) );
+		int [] result = new int [ p1.length ];
+		divide( p1, p2, result );
+		return result;
+	}
+
+	/**
+	 * Writes divide( p1, p2 ) into dest, which may be p1 or p2,
+	 * without forming the inverse of p2 in a separate array.
+	 */
+	static void divide( int [] p1, int [] p2, int [] dest ) {
+		assert( isPermutation( p1 ) );
+		assert( isPermutation( p2 ) );
+		assert( p1.length == p2.length && dest.length == p1.length );
+
+		if( p1 == p2 ) {
+			for( int i=0; i<dest.length; ++i )
+				dest[ i ] = i;
+		}
+		else if( dest == p1 ) {
+			// p1 p2^-1 = ( p2 p1^-1 )^-1:
+			invertInPlace( dest );
+			gather( dest, p2 );
+			invertInPlace( dest );
+		}
+		else {
+			if( dest != p2 )
+				System.arraycopy( p2, 0, dest, 0, p2.length );
+			invertInPlace( dest );
+			gather( dest, p1 );
+		}
+		assert( isPermutation( dest ) );
 	}
 
 	///////////////////////////////
 	
 	public static int [] 
 	mod( int [] p1, int [] p2 )	{
-		return multiply( invert( p1 ), p2 );
+		int [] result = new int [ p1.length ];
+		mod( p1, p2, result );
+		return result;
+	}
+
+	/**
+	 * Writes mod( p1, p2 ) into dest, which may be p1 or p2,
+	 * without forming the inverse of p1 in a separate array.
+	 */
+	static void mod( int [] p1, int [] p2, int [] dest ) {
+		assert( isPermutation( p1 ) );
+		assert( isPermutation( p2 ) );
+		assert( p1.length == p2.length && dest.length == p1.length );
+
+		if( p1 == p2 ) {
+			for( int i=0; i<dest.length; ++i )
+				dest[ i ] = i;
+		}
+		else if( dest == p2 ) {
+			// p1^-1 p2 = ( p2^-1 p1 )^-1:
+			mod( p2, p1, dest );
+			invertInPlace( dest );
+		}
+		else {
+			if( dest != p1 )
+				System.arraycopy( p1, 0, dest, 0, p1.length );
+			invertInPlace( dest );
+			for( int i=0; i<dest.length; ++i )
+				dest[ i ] = p2[ dest[ i ] ];
+		}
+		assert( isPermutation( dest ) );
 	}
 	
 	///////////////////////////////
@@ -138,6 +220,80 @@ final class ArrayUtilsUnchecked {
 		assert( isPermutation( result ) );
 		return result;
 	}
+
+	/**
+	 * Inverts p in O(n) time and no extra space, by following each cycle
+	 * and marking the entries already written by complementing them.
+	 */
+	static void invertInPlace( int [] p ) {
+		assert( isPermutation( p ) );
+
+		for( int start=0; start<p.length; ++start ) {
+			if( p[ start ] < 0 )
+				continue;
+
+			int prev = start;
+			int current = p[ start ];
+			while( current != start ) {
+				final int next = p[ current ];
+				p[ current ] = ~prev;
+				prev = current;
+				current = next;
+			}
+			p[ start ] = ~prev;
+		}
+		for( int i=0; i<p.length; ++i )
+			p[ i ] = ~p[ i ];
+
+		assert( isPermutation( p ) );
+	}
+
+	/**
+	 * Sets values[ i ] to the old values[ perm[ i ] ] in place, by following
+	 * the cycles of perm, which must be a different array. The values must be
+	 * non-negative, since visited entries are marked by complementing them.
+	 */
+	static void gather( int [] values, int [] perm ) {
+		assert( values != perm && values.length == perm.length );
+
+		for( int start=0; start<values.length; ++start ) {
+			if( values[ start ] < 0 )
+				continue;
+
+			final int first = values[ start ];
+			int j = start;
+			for( int k=perm[ j ]; k != start; k=perm[ j ] ) {
+				values[ j ] = ~values[ k ];
+				j = k;
+			}
+			values[ j ] = ~first;
+		}
+		for( int i=0; i<values.length; ++i )
+			values[ i ] = ~values[ i ];
+	}
+
+	/**
+	 * Replaces p with multiply( p, p ) in place, by following each cycle of p.
+	 */
+	private static void square( int [] p ) {
+		for( int start=0; start<p.length; ++start ) {
+			if( p[ start ] < 0 )
+				continue;
+
+			// along the cycle of start, set p[ j ] to the old p[ p[ j ] ]:
+			final int first = p[ start ];
+			int j = start;
+			for( int k=first; k != start; ) {
+				final int next = p[ k ];
+				p[ j ] = ~next;
+				j = k;
+				k = next;
+			}
+			p[ j ] = ~first;
+		}
+		for( int i=0; i<p.length; ++i )
+			p[ i ] = ~p[ i ];
+	}
 	
 	///////////////////////////////
 	
@@ -145,14 +301,9 @@ final class ArrayUtilsUnchecked {
 	add( int [] p1, int [] p2 )	{
 		assert( p1.length == p2.length );
 		
-		int [] a = inversionVector( p1 );
-		int [] b = inversionVector( p2 );
-
-		int [] inversionVector = new int [ p1.length - 1 ];
-		for( int i=0; i<inversionVector.length; ++i )
-			inversionVector[ i ] = (a[i] + b[i]) % ( p1.length - i );
-
-		return fromInversionVector( inversionVector );
+		int [] result = new int [ p1.length ];
+		new LehmerCode( p1.length ).add( p1, p2, result );
+		return result;
 	}
 
 	///////////////////////////////
@@ -163,44 +314,16 @@ final class ArrayUtilsUnchecked {
 		assert( isPermutation( p2 ) );
 		assert( p1.length == p2.length );		
 		
-		int [] a = inversionVector( p1 );
-		int [] b = inversionVector( p2 );
-
-		int [] inversionVector = new int [ p1.length - 1 ];
-		for( int i=0; i<inversionVector.length; ++i ) {
-			int val  = ( a[i] - b[i] ) % ( p1.length - i );
-			if( val < 0 )
-				val += p1.length - i;
-			
-			inversionVector[ i ] = val;				
-		}
-
-		return fromInversionVector( inversionVector );
+		int [] result = new int [ p1.length ];
+		new LehmerCode( p1.length ).subtract( p1, p2, result );
+		return result;
 	}
 	
 	///////////////////////////////
 	
 	public static int []
 	fromInversionVector( int ... inversionVector ) {
-		final int size = inversionVector.length + 1;
-		List< Integer > N = new ArrayList< Integer >();
-		for( int i=0; i<size; ++i )
-			N.add( i );
-
-		List< Integer > perm = new ArrayList< Integer >();
-		for( int k=0; k<size - 1; ++k )
-		{
-			final int value = N.get( inversionVector[ k ] );
-			perm.add( value );
- 			final int index = N.indexOf( value );
- 			assert( value != -1 );
- 			N.remove( index );
-		}
-
-		for( Integer v : N )
-			perm.add( v );
-		
-		int [] result = MitlCollections.asArray( perm );
+		int [] result = new LehmerCode( inversionVector.length + 1 ).decode( inversionVector );
 		assert( isPermutation( result ) );
 		return result;		
 	}
@@ -209,107 +332,86 @@ final class ArrayUtilsUnchecked {
 	
     public static int [] 
     conjugate( int [] a, int [] b ) {
-		assert( isPermutation( a ) );
-		assert( isPermutation( b ) );
-		assert( a.length == b.length );		
-		
-        int [] bInverse =  new int [ a.length ];
-        for( int i=0; i<a.length; ++i )
-            bInverse[ b[ i ] ] = i;
-
         int [] result = new int [ a.length ];
-        for( int i=0; i<b.length; ++i )
-            result[ i ] = bInverse[ a[ b[ i ] ] ];
-        
-        assert( isPermutation( result ) );
+        conjugate( a, b, result );
         return result;
     }
 
+    /**
+     * Writes conjugate( a, b ) into dest, which may be a but not b.
+     */
+    static void conjugate( int [] a, int [] b, int [] dest ) {
+		assert( a.length == b.length && dest.length == a.length );
+		if( a == b ) {
+			System.arraycopy( a, 0, dest, 0, a.length );
+			return;
+		}
+		assert( dest != b );
+
+		multiply( b, a, dest );
+		divide( dest, b, dest );
+    }
+
     ///////////////////////////////
     
     public static int [] 
     commutator( int [] a, int [] b ) {
-		assert( isPermutation( a ) );
-		assert( isPermutation( b ) );
-		assert( a.length == b.length );		
-    
-        int [] inva = new int [ a.length ];
-        for( int i=0; i<a.length; ++i )
-            inva[ a[ i ] ] = i;
-        int [] invb = new int [ b.length ];
-        for( int i=0; i<b.length; ++i )
-            invb[ b[ i ] ] = i;
-        
         int [] result = new int [ a.length ];
-        for( int i=0; i<b.length; ++i )
-            result[ i ] = inva[ invb[ a[ b[ i ] ] ] ];
-        
-        assert( isPermutation( result ) );
+        commutator( a, b, result );
         return result;
     }
 
+    /**
+     * Writes commutator( a, b ) into dest, which must be neither a nor b.
+     */
+    static void commutator( int [] a, int [] b, int [] dest ) {
+		assert( a.length == b.length && dest.length == a.length );
+		assert( dest != a && dest != b );
+
+		multiply( b, a, dest );
+		divide( dest, b, dest );
+		divide( dest, a, dest );
+    }
+
     ///////////////////////////////
     
     public static int []
     power( int [] a, int n ) {
+        int [] result = new int [ a.length ];
+        power( a, n, result );
+        return result;
+    }
+
+    /**
+     * Writes the n-th power of a into dest, which must not be a.
+     * Each cycle of length L is rotated by n mod L, so this takes
+     * O(a.length) time for any n, including negative n.
+     */
+    static void power( int [] a, int n, int [] dest ) {
 		assert( isPermutation( a ) );
-		
-        if( n == 0 )
-            return identityPermutation( a.length );
-        else if( n == 1 )
-            return a.clone();
-        else if( n < 0 )
-            return power( invert( a ), -n );
-        else {
-        	// int [] b = new int [ a.size() ];
-        	// Permutation result = new Permutation( a.size() );
-        	int [] result = new int [ a.length ];        	
-        		
-            if( a.length == 2 ) {
-            	for( int i=0; i<a.length; ++i )            	
-            		result[ i ] = a[ a[ i ] ];
-            }
-            else if( n == 3 ) {
-                // b = [a[a[i]] for i in a];
-            	for( int i=0; i<a.length; ++i )            	
-            		result[ i ] = a[ a[ a[ i ] ] ];
-            }
-            else if( n == 4 ) {
-                // b = [a[a[a[i]]] for i in a];
-            	for( int i=0; i<a.length; ++i )            	
-            		result[ i ] = a[ a[ a[ a[ i ] ] ] ];
-            }
-            else {
-                // b = range(len(a));
-                for( ; ; )
-                {
-                	if( n % 2 != 0 ) {
-                		// b = [b[i] for i in a];
-                    	for( int i=0; i<a.length; ++i )            	
-                    		result[ i ] = result[ a[ i ] ];
-                		
-                    	if( --n == 0 )
-                    		break;
-                	}
-                	if( n % 4 == 0 ) {
-                        // a = [a[a[a[i]]] for i in a];                		
-                		for( int i=0; i<a.length; ++i )            	
-                			result[ i ] = a[ a[ a[ a[ i ] ] ] ];
-
-                		n /= 4;
-                	}
-                	else if( n % 2 == 0 ) {
-                		// a = [a[i] for i in a];
-                    	for( int i=0; i<a.length; ++i )            	
-                    		result[ i ] = a[ a[ i ] ];
-                		n /= 2;
-                	}
-                }
-            }
-            
-            assert( isPermutation( result ) );
-            return result;
-        }
+		assert( dest != a && dest.length == a.length );
+
+		Arrays.fill( dest, -1 );
+		for( int start=0; start<a.length; ++start ) {
+			if( dest[ start ] >= 0 )
+				continue;
+
+			int length = 1;
+			for( int k=a[ start ]; k != start; k=a[ k ] )
+				++length;
+
+			int target = start;
+			for( int steps=Math.floorMod( n, length ); steps>0; --steps )
+				target = a[ target ];
+
+			int source = start;
+			for( int i=0; i<length; ++i ) {
+				dest[ source ] = target;
+				source = a[ source ];
+				target = a[ target ];
+			}
+		}
+		assert( isPermutation( dest ) );
     }
 	
 	///////////////////////////////
@@ -349,17 +451,7 @@ final class ArrayUtilsUnchecked {
         
 		assert( isPermutation( perm ) );
 		
-        int [] result = new int [ perm.length - 1 ];
-
-        for( int i=0; i<perm.length - 1; ++i ) {
-            int val = 0;
-            for( int j=i+1; j<perm.length; ++j )
-                if( perm[j] < perm[i] )
-                	++val;
-            result[i] = val;
-        }
-        
-        return result;
+        return new LehmerCode( perm.length ).encode( perm );
 	}
 	
 	///////////////////////////////
@@ -428,29 +520,32 @@ final class ArrayUtilsUnchecked {
 		}
 	}
 	
-	static void rotateArray( int[] array, int ammount ) {
+	/**
+	 * Reverses array[ from ] ... array[ to - 1 ] in place.
+	 */
+	static void reverse( int [] array, int from, int to ) {
+		for( int i=from, j=to - 1; i<j; ++i, --j ) {
+			final int temp = array[ i ];
+			array[ i ] = array[ j ];
+			array[ j ] = temp;
+		}
+	}
 
-		// size of the array
+	/**
+	 * Rotates array right by ammount places in place, by three reversals.
+	 */
+	static void rotateArray( int[] array, int ammount ) {
 		final int len = array.length;
-		int[] newArray = new int[len];
+		if( len == 0 )
+			return;
 
 		ammount %= len;
 		if( ammount < 0 )
 			ammount += len;
 
-		// The offset is the amount from
-		// end of the original array. This is where
-		// we start the copy.
-		final int offset = len - ammount;
-
-		// Copy from offset to end
-		System.arraycopy(array, offset, newArray, 0, ammount);
-
-		// Copy from beginning to offset
-		System.arraycopy(array, 0, newArray, ammount, offset);
-
-		// Copy the temp back to the original
-		System.arraycopy( newArray, 0, array, 0, len );
+		reverse( array, 0, len );
+		reverse( array, 0, ammount );
+		reverse( array, ammount, len );
 	}
 	
 	static int [] flip( int [] perm, int a, int b )	{
@@ -479,17 +574,70 @@ final class ArrayUtilsUnchecked {
 
 	///////////////////////////////
 	
+	/**
+	 * Chains the SplitMix64 finalizer over the elements. 
+	 */
+	public static long fingerprint( int [] perm ) {
+		long z = perm.length;
+		for( int i=0; i<perm.length; ++i )
+			z = SplitMix64.mix( ( z + perm[ i ] ) * SplitMix64.GOLDEN_GAMMA );
+
+		return z;
+	}
+	
+	///////////////////////////////
+	
 	public static int hammingDistance( int [] a, int [] b ) {
 		if( a.length != b.length )
 			throw new IllegalArgumentException();
 
 		int result = 0;
 		for( int i=0; i<a.length; ++i )
-			if( a[ i ] == b[ i ] )
+			if( a[ i ] != b[ i ] )
 				++result;
 		
 		return result;
 	}
+
+	///////////////////////////////
+	
+	/**
+	 * The number of pairs of elements that a and b place in opposite orders,
+	 * i.e. the number of inversions of a relative to b, counted by merge sort
+	 * in O(n log n).
+	 */
+	public static long kendallTauDistance( int [] a, int [] b ) {
+		assert( isPermutation( a ) );
+		assert( isPermutation( b ) );
+		assert( a.length == b.length );
+		
+		int [] positionInB = invert( b );
+		int [] values = new int [ a.length ];
+		for( int i=0; i<a.length; ++i )
+			values[ i ] = positionInB[ a[ i ] ];
+		
+		int [] scratch = new int [ a.length ];
+		long result = 0;
+		for( int width = 1; width < values.length; width *= 2 ) {
+			for( int lo = 0; lo < values.length - width; lo += 2 * width ) {
+				final int mid = lo + width;
+				final int hi = Math.min( lo + 2 * width, values.length );
+				int i = lo, j = mid, k = lo;
+				while( i < mid && j < hi ) {
+					if( values[ i ] <= values[ j ] )
+						scratch[ k++ ] = values[ i++ ];
+					else {
+						result += mid - i;
+						scratch[ k++ ] = values[ j++ ];
+					}
+				}
+				while( i < mid ) scratch[ k++ ] = values[ i++ ];
+				while( j < hi ) scratch[ k++ ] = values[ j++ ];
+				System.arraycopy( scratch, lo, values, lo, hi - lo );
+			}
+		}
+		return result;
+	}
 }
 
 // End ///////////////////////////////////////////////////////////////
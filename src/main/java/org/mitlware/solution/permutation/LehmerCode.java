@@ -0,0 +1,160 @@
+package org.mitlware.solution.permutation;
+
+import java.util.Arrays;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * Converts between permutations of 0..n-1 and their Lehmer codes
+ * (inversion vectors, as returned by ArrayUtilsUnchecked.inversionVector),
+ * in O(n log n) time using a Fenwick tree over the values.
+ *
+ * Element i of the code of perm is the number of j > i with perm[ j ] < perm[ i ].
+ * The last element is always 0 and so is omitted, giving n - 1 elements.
+ *
+ * Encoding counts, from the right, the smaller values already seen;
+ * decoding repeatedly selects and removes the code[ k ]-th smallest
+ * remaining value, found by binary descent of the tree.
+ *
+ * An instance holds the tree and scratch arrays for one n, and can be
+ * reused so that add and subtract allocate nothing. Not thread-safe.
+ *
+ * @see <a href="http://en.wikipedia.org/wiki/Lehmer_code">Lehmer code</a>
+ *
+ * <pre>
+ * &#64;article{Fenwick:1994,
+ *   author  = {Fenwick, Peter M.},
+ *   title   = {A New Data Structure for Cumulative Frequency Tables},
+ *   journal = {Software: Practice and Experience},
+ *   volume  = {24},
+ *   number  = {3},
+ *   pages   = {327--336},
+ *   year    = {1994}
+ * }
+ * </pre>
+ */
+
+public final class LehmerCode {
+
+	private final int n;
+	/** 1-based Fenwick tree of value counts: value v is at index v + 1 */
+	private final int [] tree;
+	private final int topStep;
+	private final int [] codeA;
+	private final int [] codeB;
+
+	///////////////////////////////
+
+	public LehmerCode( int n ) {
+		if( n < 1 )
+			throw new IllegalArgumentException();
+
+		this.n = n;
+		this.tree = new int [ n + 1 ];
+		this.topStep = Integer.highestOneBit( n );
+		this.codeA = new int [ n - 1 ];
+		this.codeB = new int [ n - 1 ];
+	}
+
+	///////////////////////////////
+
+	public int size() { return n; }
+
+	public int [] encode( int [] perm ) {
+		int [] result = new int [ n - 1 ];
+		encode( perm, result );
+		return result;
+	}
+
+	/**
+	 * Writes the n - 1 elements of the Lehmer code of perm to dest.
+	 */
+	public void encode( int [] perm, int [] dest ) {
+		if( perm.length != n )
+			throw new IllegalArgumentException();
+
+		Arrays.fill( tree, 0 );
+		for( int i=n - 1; i>=0; --i ) {
+			final int v = perm[ i ];
+			if( i < n - 1 ) {
+				int smaller = 0;
+				for( int j=v; j>0; j -= j & -j )
+					smaller += tree[ j ];
+				dest[ i ] = smaller;
+			}
+			for( int j=v + 1; j<=n; j += j & -j )
+				++tree[ j ];
+		}
+	}
+
+	public int [] decode( int [] code ) {
+		int [] result = new int [ n ];
+		decode( code, result );
+		return result;
+	}
+
+	/**
+	 * Writes to dest the permutation whose Lehmer code is code, which
+	 * must have n - 1 elements with code[ k ] in [0, n - 1 - k].
+	 * code and dest may be the same array if it has n elements.
+	 */
+	public void decode( int [] code, int [] dest ) {
+		if( code.length < n - 1 || dest.length != n )
+			throw new IllegalArgumentException();
+
+		for( int j=1; j<=n; ++j )
+			tree[ j ] = j & -j;
+
+		for( int k=0; k<n; ++k ) {
+			final int r = k < n - 1 ? code[ k ] : 0;
+			if( r < 0 || r >= n - k )
+				throw new IllegalArgumentException();
+
+			int pos = 0;
+			int remaining = r + 1;
+			for( int step=topStep; step>0; step >>>= 1 ) {
+				if( pos + step <= n && tree[ pos + step ] < remaining ) {
+					pos += step;
+					remaining -= tree[ pos ];
+				}
+			}
+			dest[ k ] = pos;
+			for( int j=pos + 1; j<=n; j += j & -j )
+				--tree[ j ];
+		}
+	}
+
+	///////////////////////////////
+
+	/**
+	 * Writes to dest the permutation whose Lehmer code is the element-wise sum
+	 * of those of p1 and p2, modulo the range of each element.
+	 * dest may be p1 or p2.
+	 */
+	public void add( int [] p1, int [] p2, int [] dest ) {
+		encode( p1, codeA );
+		encode( p2, codeB );
+		for( int i=0; i<n - 1; ++i ) {
+			final int val = codeA[ i ] + codeB[ i ];
+			codeA[ i ] = val >= n - i ? val - ( n - i ) : val;
+		}
+		decode( codeA, dest );
+	}
+
+	/**
+	 * Writes to dest the permutation whose Lehmer code is the element-wise
+	 * difference of those of p1 and p2, modulo the range of each element.
+	 * dest may be p1 or p2.
+	 */
+	public void subtract( int [] p1, int [] p2, int [] dest ) {
+		encode( p1, codeA );
+		encode( p2, codeB );
+		for( int i=0; i<n - 1; ++i ) {
+			final int val = codeA[ i ] - codeB[ i ];
+			codeA[ i ] = val < 0 ? val + ( n - i ) : val;
+		}
+		decode( codeA, dest );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
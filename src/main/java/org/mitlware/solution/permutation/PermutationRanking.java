@@ -0,0 +1,260 @@
+package org.mitlware.solution.permutation;
+
+import java.math.BigInteger;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * Bijections between the permutations of 0..n-1 and the ranks [0, n!),
+ * as for perfect hashing, partitioning exhaustive search by rank,
+ * and storing permutations compactly as integers.
+ *
+ * Two orders are provided:
+ * <ul>
+ * <li>LEXICOGRAPHIC, in which ranks follow the lexicographic order of
+ * the arrays. Ranking and unranking go through the Lehmer code, in
+ * O(n log n).</li>
+ * <li>MYRVOLD_RUSKEY, the order of Myrvold:2001 (below), in which ranking
+ * and unranking are O(n) but the order has no simple meaning.</li>
+ * </ul>
+ * The long forms require n &lt;= 20, since 21! exceeds Long.MAX_VALUE;
+ * the BigInteger forms accept any n.
+ *
+ * <pre>
+ * &#64;article{Myrvold:2001,
+ *   author  = {Myrvold, Wendy and Ruskey, Frank},
+ *   title   = {Ranking and Unranking Permutations in Linear Time},
+ *   journal = {Information Processing Letters},
+ *   volume  = {79},
+ *   number  = {6},
+ *   pages   = {281--284},
+ *   year    = {2001}
+ * }
+ * </pre>
+ */
+
+public final class PermutationRanking {
+
+	public enum Order { LEXICOGRAPHIC, MYRVOLD_RUSKEY }
+
+	/** The largest n for which every rank fits in a long. */
+	public static final int MAX_LONG_SIZE = 20;
+
+	private static final long [] FACTORIAL = new long [ MAX_LONG_SIZE + 1 ];
+	static {
+		FACTORIAL[ 0 ] = 1;
+		for( int i=1; i<=MAX_LONG_SIZE; ++i )
+			FACTORIAL[ i ] = FACTORIAL[ i - 1 ] * i;
+	}
+
+	private PermutationRanking() {}
+
+	///////////////////////////////
+
+	/**
+	 * @return n!, for n in [0, 20]
+	 */
+	public static long factorial( int n ) {
+		if( n < 0 || n > MAX_LONG_SIZE )
+			throw new IllegalArgumentException();
+
+		return FACTORIAL[ n ];
+	}
+
+	///////////////////////////////
+
+	public static long rank( int [] perm, Order order ) {
+		checkLongSize( perm.length );
+		if( !ArrayUtilsUnchecked.isPermutation( perm ) )
+			throw new IllegalArgumentException();
+
+		final int n = perm.length;
+		final int [] digits = digits( perm, order );
+		long result = 0;
+		if( order == Order.LEXICOGRAPHIC ) {
+			for( int i=0; i<n - 1; ++i )
+				result = result * ( n - i ) + digits[ i ];
+		}
+		else {
+			for( int k=2; k<=n; ++k )
+				result = digits[ k - 1 ] + k * result;
+		}
+		return result;
+	}
+
+	public static BigInteger bigRank( int [] perm, Order order ) {
+		if( !ArrayUtilsUnchecked.isPermutation( perm ) )
+			throw new IllegalArgumentException();
+
+		final int n = perm.length;
+		final int [] digits = digits( perm, order );
+		BigInteger result = BigInteger.ZERO;
+		if( order == Order.LEXICOGRAPHIC ) {
+			for( int i=0; i<n - 1; ++i )
+				result = result.multiply( BigInteger.valueOf( n - i ) ).add( BigInteger.valueOf( digits[ i ] ) );
+		}
+		else {
+			for( int k=2; k<=n; ++k )
+				result = result.multiply( BigInteger.valueOf( k ) ).add( BigInteger.valueOf( digits[ k - 1 ] ) );
+		}
+		return result;
+	}
+
+	/**
+	 * The mixed-radix digits of the rank of perm: under LEXICOGRAPHIC, its
+	 * Lehmer code, with digit i in radix n - i; under MYRVOLD_RUSKEY,
+	 * digit k - 1 in radix k, for k from 2 to n, as produced by the
+	 * rank1 procedure of Myrvold:2001.
+	 */
+	private static int [] digits( int [] perm, Order order ) {
+		final int n = perm.length;
+		if( n <= 1 )
+			return new int [ n ];
+
+		if( order == Order.LEXICOGRAPHIC )
+			return new LehmerCode( n ).encode( perm );
+
+		int [] p = perm.clone();
+		int [] inverse = new int [ n ];
+		for( int i=0; i<n; ++i )
+			inverse[ p[ i ] ] = i;
+
+		int [] result = new int [ n ];
+		for( int k=n; k>1; --k ) {
+			final int s = p[ k - 1 ];
+			result[ k - 1 ] = s;
+			final int j = inverse[ k - 1 ];
+			p[ k - 1 ] = k - 1;
+			p[ j ] = s;
+			inverse[ s ] = j;
+			inverse[ k - 1 ] = k - 1;
+		}
+		return result;
+	}
+
+	///////////////////////////////
+
+	public static int [] unrank( int n, long rank, Order order ) {
+		int [] result = new int [ n ];
+		unrank( n, rank, order, result, 0 );
+		return result;
+	}
+
+	/**
+	 * Writes the permutation of 0..n-1 with the given rank to dest[ destPos, destPos + n ).
+	 */
+	public static void unrank( int n, long rank, Order order, int [] dest, int destPos ) {
+		checkLongSize( n );
+		if( rank < 0 || rank >= FACTORIAL[ n ] )
+			throw new IllegalArgumentException();
+
+		if( order == Order.LEXICOGRAPHIC ) {
+			if( n == 0 )
+				return;
+			int [] code = new int [ n ];
+			for( int i=n - 2; i>=0; --i ) {
+				code[ i ] = (int)( rank % ( n - i ) );
+				rank /= n - i;
+			}
+			new LehmerCode( n ).decode( code, code );
+			System.arraycopy( code, 0, dest, destPos, n );
+		}
+		else {
+			for( int i=0; i<n; ++i )
+				dest[ destPos + i ] = i;
+			for( int k=n; k>1; --k ) {
+				swap( dest, destPos + k - 1, destPos + (int)( rank % k ) );
+				rank /= k;
+			}
+		}
+	}
+
+	public static int [] unrank( int n, BigInteger rank, Order order ) {
+		if( n < 0 || rank.signum() < 0 )
+			throw new IllegalArgumentException();
+
+		int [] result = new int [ n ];
+		if( order == Order.LEXICOGRAPHIC ) {
+			if( n == 0 ) {
+				if( rank.signum() != 0 )
+					throw new IllegalArgumentException();
+				return result;
+			}
+			for( int i=n - 2; i>=0; --i ) {
+				BigInteger [] qr = rank.divideAndRemainder( BigInteger.valueOf( n - i ) );
+				result[ i ] = qr[ 1 ].intValue();
+				rank = qr[ 0 ];
+			}
+			if( rank.signum() != 0 )
+				throw new IllegalArgumentException();
+			new LehmerCode( n ).decode( result, result );
+		}
+		else {
+			for( int i=0; i<n; ++i )
+				result[ i ] = i;
+			for( int k=n; k>1; --k ) {
+				BigInteger [] qr = rank.divideAndRemainder( BigInteger.valueOf( k ) );
+				swap( result, k - 1, qr[ 1 ].intValue() );
+				rank = qr[ 0 ];
+			}
+			if( rank.signum() != 0 )
+				throw new IllegalArgumentException();
+		}
+		return result;
+	}
+
+	///////////////////////////////
+
+	/**
+	 * Writes the permutations of 0..n-1 with ranks [fromRank, fromRank + count)
+	 * to dest, consecutively from destPos. Under LEXICOGRAPHIC, only the first
+	 * is unranked, and each of the others is the successor of its predecessor,
+	 * in amortized constant time.
+	 */
+	public static void unrank( int n, long fromRank, int count, Order order, int [] dest, int destPos ) {
+		checkLongSize( n );
+		if( count < 0 || fromRank < 0 || fromRank > FACTORIAL[ n ] - count )
+			throw new IllegalArgumentException();
+		if( count == 0 )
+			return;
+
+		unrank( n, fromRank, order, dest, destPos );
+		for( int r=1; r<count; ++r ) {
+			final int pos = destPos + r * n;
+			if( order == Order.LEXICOGRAPHIC ) {
+				System.arraycopy( dest, pos - n, dest, pos, n );
+				nextPermutation( dest, pos, n );
+			}
+			else
+				unrank( n, fromRank + r, order, dest, pos );
+		}
+	}
+
+	/**
+	 * Replaces a[ from, from + n ) with its lexicographic successor, which must exist.
+	 */
+	private static void nextPermutation( int [] a, int from, int n ) {
+		int i = from + n - 2;
+		while( a[ i ] > a[ i + 1 ] )
+			--i;
+		int j = from + n - 1;
+		while( a[ j ] < a[ i ] )
+			--j;
+		swap( a, i, j );
+		for( int lo=i + 1, hi=from + n - 1; lo<hi; ++lo, --hi )
+			swap( a, lo, hi );
+	}
+
+	private static void swap( int [] a, int i, int j ) {
+		final int temp = a[ i ];
+		a[ i ] = a[ j ];
+		a[ j ] = temp;
+	}
+
+	private static void checkLongSize( int n ) {
+		if( n < 0 || n > MAX_LONG_SIZE )
+			throw new IllegalArgumentException();
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,277 @@
+package org.mitlware.solution.permutation;
+
+import java.util.Arrays;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A cyclic tour of the cities 0..n-1 that supports the edge-exchange
+ * moves of TSP local search, as implemented by ArrayTour and TwoLevelTour.
+ *
+ * Every move is made by reversing paths of the tour, and an implementation
+ * may reverse the complement of a path instead, which gives the same cyclic
+ * tour but reverses its orientation. next and prev may therefore exchange
+ * meaning after any move, and so moves are specified by cities and edges,
+ * which do not depend on the orientation. Distances are assumed to be symmetric.
+ *
+ * <pre>
+ * &#64;article{Lin:1973,
+ *   author  = {Lin, Shen and Kernighan, Brian W.},
+ *   title   = {An Effective Heuristic Algorithm for the Traveling-Salesman Problem},
+ *   journal = {Operations Research},
+ *   volume  = {21},
+ *   number  = {2},
+ *   pages   = {498--516},
+ *   year    = {1973}
+ * }
+ * </pre>
+ */
+
+public interface Tour {
+
+	/**
+	 * A symmetric distance between cities.
+	 */
+	@FunctionalInterface
+	public interface Distance {
+		double distance( int city1, int city2 );
+	}
+
+	///////////////////////////////
+
+	public int size();
+
+	public int next( int city );
+
+	public int prev( int city );
+
+	/**
+	 * @return true if b lies on the path from a forward to c, inclusive
+	 */
+	public boolean between( int a, int b, int c );
+
+	/**
+	 * Reverses the path from city from forward to city to, inclusive,
+	 * or else the rest of the tour, which gives the same cyclic tour.
+	 */
+	public void reversePath( int from, int to );
+
+	/**
+	 * @return the cities in tour order, from an unspecified first city
+	 */
+	public ArrayForm toArrayForm();
+
+	///////////////////////////////
+
+	public default double length( Distance d ) {
+		double result = 0.0;
+		int city = 0;
+		for( int i=0; i<size(); ++i ) {
+			final int following = next( city );
+			result += d.distance( city, following );
+			city = following;
+		}
+		return result;
+	}
+
+	/**
+	 * Replaces the tour edges (a, b) and (c, d) with (a, c) and (b, d),
+	 * where b follows a and d follows c in the same direction.
+	 */
+	public default void exchange( int a, int b, int c, int d ) {
+		if( next( a ) == b )
+			reversePath( b, c );
+		else
+			reversePath( c, b );
+	}
+
+	/**
+	 * The 2-opt move that replaces the edges (a, next( a )) and (c, next( c ))
+	 * with (a, c) and (next( a ), next( c )).
+	 */
+	public default void twoOptMove( int a, int c ) {
+		exchange( a, next( a ), c, next( c ) );
+	}
+
+	/**
+	 * @return the change in tour length that twoOptMove( a, c ) would make
+	 */
+	public default double twoOptDelta( int a, int c, Distance d ) {
+		final int b = next( a );
+		final int e = next( c );
+		return d.distance( a, c ) + d.distance( b, e ) - d.distance( a, b ) - d.distance( c, e );
+	}
+
+	/**
+	 * The Or-opt move that takes the path from s1 forward to s2 and reinserts it
+	 * between p and next( p ), in its own order if reversed is false, i.e. as
+	 * p, s1 ... s2, next( p ), or else as p, s2 ... s1, next( p ).
+	 * p must not lie on the path, nor be prev( s1 ).
+	 */
+	public default void orOptMove( int s1, int s2, int p, boolean reversed ) {
+		final int a = prev( s1 );
+		final int b = next( s2 );
+		final int c = next( p );
+		if( p == a || between( s1, p, s2 ) )
+			throw new IllegalArgumentException();
+
+		exchange( a, s1, p, c );
+		exchange( a, p, b, s2 );
+		if( !reversed )
+			exchange( p, s2, s1, c );
+	}
+
+	/**
+	 * @return the change in tour length that orOptMove( s1, s2, p, reversed ) would make
+	 */
+	public default double orOptDelta( int s1, int s2, int p, boolean reversed, Distance d ) {
+		final int a = prev( s1 );
+		final int b = next( s2 );
+		final int c = next( p );
+		final double added = reversed
+			? d.distance( p, s2 ) + d.distance( s1, c )
+			: d.distance( p, s1 ) + d.distance( s2, c );
+		return d.distance( a, b ) + added
+			- d.distance( a, s1 ) - d.distance( s2, b ) - d.distance( p, c );
+	}
+
+	/**
+	 * The pure 3-opt (segment exchange) move: where the tour runs
+	 * a, b ... c, d ... e, f, with b = next( a ), d = next( c ) and f = next( e ),
+	 * it becomes a, d ... e, b ... c, f, with no segment reversed.
+	 * The cities a, c and e must occur in that order along the tour.
+	 */
+	public default void threeOptMove( int a, int c, int e ) {
+		final int b = next( a );
+		final int d = next( c );
+		final int f = next( e );
+		if( a == c || c == e || e == a || !between( a, c, e ) )
+			throw new IllegalArgumentException();
+
+		exchange( a, b, c, d );
+		exchange( b, d, e, f );
+		exchange( a, c, d, f );
+	}
+
+	/**
+	 * @return the change in tour length that threeOptMove( a, c, e ) would make
+	 */
+	public default double threeOptDelta( int a, int c, int e, Distance dist ) {
+		final int b = next( a );
+		final int d = next( c );
+		final int f = next( e );
+		return dist.distance( a, d ) + dist.distance( e, b ) + dist.distance( c, f )
+			- dist.distance( a, b ) - dist.distance( c, d ) - dist.distance( e, f );
+	}
+
+	///////////////////////////////
+
+	/**
+	 * A brute-force scan that makes n * ( n - 1 ) distance calls and takes 
+	 * O(n^2 k) time in the worst case, which is practical only up to some 
+	 * tens of thousands of cities. For larger instances, build the lists 
+	 * with a spatial index such as a k-d tree: twoOptLocalSearch accepts 
+	 * any precomputed lists in this form.
+	 * 
+	 * @return for each city, its k nearest other cities in increasing order of distance
+	 */
+	public static int [][] candidateLists( int n, int k, Distance d ) {
+		if( k < 0 || k >= n )
+			throw new IllegalArgumentException();
+
+		int [][] result = new int [ n ][];
+		final int [] best = new int [ k ];
+		final double [] bestDistance = new double [ k ];
+		for( int i=0; i<n; ++i ) {
+			int size = 0;
+			for( int j=0; j<n; ++j ) {
+				if( j == i )
+					continue;
+				final double dij = d.distance( i, j );
+				if( size == k && ( k == 0 || dij >= bestDistance[ k - 1 ] ) )
+					continue;
+
+				// insertion into the sorted prefix:
+				int pos = size < k ? size++ : k - 1;
+				while( pos > 0 && bestDistance[ pos - 1 ] > dij ) {
+					best[ pos ] = best[ pos - 1 ];
+					bestDistance[ pos ] = bestDistance[ pos - 1 ];
+					--pos;
+				}
+				best[ pos ] = j;
+				bestDistance[ pos ] = dij;
+			}
+			result[ i ] = Arrays.copyOf( best, size );
+		}
+		return result;
+	}
+
+	/**
+	 * Applies improving 2-opt moves between each city and its candidates, using
+	 * don't-look bits so that only the endpoints of changed edges are re-examined.
+	 * As usual with don't-look bits, the result may still admit a few improving
+	 * moves, which another call will find. Returns the number of moves made.
+	 * candidates[ c ] lists the cities considered for c, nearest first, 
+	 * e.g. as given by candidateLists for small n.
+	 */
+	public default int twoOptLocalSearch( int [][] candidates, Distance d ) {
+		final int n = size();
+		final int [] queue = new int [ n ];
+		final boolean [] queued = new boolean [ n ];
+		final int [] touched = new int [ 4 ];
+		for( int i=0, city=0; i<n; ++i, city=next( city ) ) {
+			queue[ i ] = city;
+			queued[ city ] = true;
+		}
+		int head = 0;
+		int count = n;
+		int moves = 0;
+
+		while( count > 0 ) {
+			final int a = queue[ head ];
+			if( ++head == n ) head = 0;
+			--count;
+			queued[ a ] = false;
+
+			for( int c : candidates[ a ] ) {
+				// the successor and predecessor variants of the move:
+				final int an = next( a ), cn = next( c );
+				final int ap = prev( a ), cp = prev( c );
+				final double removedNext = d.distance( a, an ) + d.distance( c, cn );
+				final double removedPrev = d.distance( ap, a ) + d.distance( cp, c );
+				final double dac = d.distance( a, c );
+				boolean improved = false;
+				if( c != an && a != cn && dac + d.distance( an, cn ) < removedNext - 1e-10 ) {
+					touched[ 0 ] = an;
+					touched[ 1 ] = cn;
+					exchange( a, an, c, cn );
+					improved = true;
+				}
+				else if( c != ap && a != cp && dac + d.distance( ap, cp ) < removedPrev - 1e-10 ) {
+					touched[ 0 ] = ap;
+					touched[ 1 ] = cp;
+					exchange( ap, a, cp, c );
+					improved = true;
+				}
+
+				if( improved ) {
+					touched[ 2 ] = a;
+					touched[ 3 ] = c;
+					++moves;
+					for( int city : touched ) {
+						if( !queued[ city ] ) {
+							queued[ city ] = true;
+							int tail = head + count;
+							queue[ tail >= n ? tail - n : tail ] = city;
+							++count;
+						}
+					}
+					break;
+				}
+			}
+		}
+		return moves;
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,411 @@
+package org.mitlware.solution.permutation;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * A Tour held as a two-level doubly-linked list, as used by Lin-Kernighan
+ * implementations for very large instances [Fredman et al. 1995].
+ *
+ * The cities are divided into segments of at most groupSize consecutive
+ * cities (about sqrt( n ) by default). Each segment holds its cities in a
+ * doubly-linked list with increasing sequence numbers, together with a
+ * reversal bit, and the segments themselves form a cyclic doubly-linked list
+ * in which each has a rank. next, prev and between are therefore O(1).
+ *
+ * A path is reversed by splitting the segments at its two ends, so that it
+ * consists of whole segments, and then reversing the order of those segments
+ * and toggling their reversal bits. The side of the tour with fewer segments
+ * is reversed. Adjacent segments that together fit in groupSize are merged
+ * again afterwards, and the whole structure is rebuilt when splitting has
+ * left too many segments, so that a reversal costs amortized O(sqrt( n )).
+ *
+ * <pre>
+ * &#64;article{Fredman:1995,
+ *   author  = {Fredman, Michael L. and Johnson, David S. and McGeoch, Lyle A. and Ostheimer, Gretchen},
+ *   title   = {Data Structures for Traveling Salesmen},
+ *   journal = {Journal of Algorithms},
+ *   volume  = {18},
+ *   number  = {3},
+ *   pages   = {432--479},
+ *   year    = {1995}
+ * }
+ * </pre>
+ */
+
+public final class TwoLevelTour implements Tour {
+
+	private static final int MAX_SEQUENCE = 1 << 30;
+
+	private final int n;
+	private final int groupSize;
+	private final int maxSegments;
+
+	// Per city:
+	private final int [] parent;
+	/** increasing from first to last of the parent, and consecutive within it */
+	private final int [] sequence;
+	/** the neighbours within the parent, in its internal order, or -1 at its ends */
+	private final int [] succ;
+	private final int [] pred;
+
+	// Per segment:
+	private final int [] first;
+	private final int [] last;
+	private final int [] segmentSize;
+	private final boolean [] reversed;
+	private final int [] rank;
+	private final int [] segmentNext;
+	private final int [] segmentPrev;
+
+	private final int [] freeSegments;
+	private int numFree;
+	private int numSegments;
+
+	/** scratch space for reversePath */
+	private final int [] path;
+
+	///////////////////////////////
+
+	public TwoLevelTour( ArrayForm perm ) {
+		this( perm, Math.max( 8, (int)Math.sqrt( perm.size() ) ) );
+	}
+
+	public TwoLevelTour( ArrayForm perm, int groupSize ) {
+		if( groupSize < 1 || perm.size() < 1 )
+			throw new IllegalArgumentException();
+
+		n = perm.size();
+		this.groupSize = groupSize;
+		maxSegments = 4 * ( ( n + groupSize - 1 ) / groupSize ) + 4;
+
+		parent = new int [ n ];
+		sequence = new int [ n ];
+		succ = new int [ n ];
+		pred = new int [ n ];
+
+		first = new int [ n ];
+		last = new int [ n ];
+		segmentSize = new int [ n ];
+		reversed = new boolean [ n ];
+		rank = new int [ n ];
+		segmentNext = new int [ n ];
+		segmentPrev = new int [ n ];
+		freeSegments = new int [ n ];
+		path = new int [ n ];
+
+		build( perm.toArray() );
+	}
+
+	private void build( int [] order ) {
+		numSegments = ( n + groupSize - 1 ) / groupSize;
+		for( int s=0; s<numSegments; ++s ) {
+			final int from = s * groupSize;
+			final int to = Math.min( n, from + groupSize );
+			for( int i=from; i<to; ++i ) {
+				final int city = order[ i ];
+				parent[ city ] = s;
+				sequence[ city ] = i - from;
+				pred[ city ] = i == from ? -1 : order[ i - 1 ];
+				succ[ city ] = i == to - 1 ? -1 : order[ i + 1 ];
+			}
+			first[ s ] = order[ from ];
+			last[ s ] = order[ to - 1 ];
+			segmentSize[ s ] = to - from;
+			reversed[ s ] = false;
+			segmentNext[ s ] = s + 1 == numSegments ? 0 : s + 1;
+			segmentPrev[ s ] = s == 0 ? numSegments - 1 : s - 1;
+		}
+
+		numFree = 0;
+		for( int s=n - 1; s>=numSegments; --s )
+			freeSegments[ numFree++ ] = s;
+		renumber();
+	}
+
+	private void rebuild() {
+		int [] order = new int [ n ];
+		for( int i=0, city=0; i<n; ++i, city=next( city ) )
+			order[ i ] = city;
+
+		build( order );
+	}
+
+	///////////////////////////////
+
+	@Override
+	public int size() { return n; }
+
+	/** The first city of segment s in tour order. */
+	private int head( int s ) { return reversed[ s ] ? last[ s ] : first[ s ]; }
+
+	/** The last city of segment s in tour order. */
+	private int tail( int s ) { return reversed[ s ] ? first[ s ] : last[ s ]; }
+
+	@Override
+	public int next( int city ) {
+		final int s = parent[ city ];
+		final int result = reversed[ s ] ? pred[ city ] : succ[ city ];
+		return result >= 0 ? result : head( segmentNext[ s ] );
+	}
+
+	@Override
+	public int prev( int city ) {
+		final int s = parent[ city ];
+		final int result = reversed[ s ] ? succ[ city ] : pred[ city ];
+		return result >= 0 ? result : tail( segmentPrev[ s ] );
+	}
+
+	/**
+	 * A key that increases along the tour from the head of the segment of rank 0.
+	 */
+	private long key( int city ) {
+		final int s = parent[ city ];
+		final int seq = reversed[ s ] ? -sequence[ city ] : sequence[ city ];
+		return ( (long)rank[ s ] << 32 ) + seq;
+	}
+
+	@Override
+	public boolean between( int a, int b, int c ) {
+		final long ka = key( a );
+		final long kb = key( b );
+		final long kc = key( c );
+		return ka <= kc
+			? ka <= kb && kb <= kc
+			: kb >= ka || kb <= kc;
+	}
+
+	@Override
+	public ArrayForm toArrayForm() {
+		int [] result = new int [ n ];
+		for( int i=0, city=0; i<n; ++i, city=next( city ) )
+			result[ i ] = city;
+
+		return new ArrayForm( result );
+	}
+
+	///////////////////////////////
+
+	@Override
+	public void reversePath( int from, int to ) {
+		if( from == to || next( to ) == from )
+			return;
+
+		int pathSegments = rank[ parent[ to ] ] - rank[ parent[ from ] ];
+		if( pathSegments < 0 )
+			pathSegments += numSegments;
+		if( 2 * ( pathSegments + 1 ) > numSegments ) {
+			final int complementFrom = next( to );
+			to = prev( from );
+			from = complementFrom;
+		}
+
+		splitBefore( from );
+		splitBefore( next( to ) );
+
+		final int firstSegment = parent[ from ];
+		final int lastSegment = parent[ to ];
+		final int before = segmentPrev[ firstSegment ];
+		final int after = segmentNext[ lastSegment ];
+
+		int k = 0;
+		for( int s=firstSegment; ; s=segmentNext[ s ] ) {
+			path[ k++ ] = s;
+			reversed[ s ] = !reversed[ s ];
+			if( s == lastSegment )
+				break;
+		}
+
+		int previous = before;
+		for( int i=k - 1; i>=0; --i ) {
+			final int s = path[ i ];
+			segmentNext[ previous ] = s;
+			segmentPrev[ s ] = previous;
+			previous = s;
+		}
+		segmentNext[ previous ] = after;
+		segmentPrev[ after ] = previous;
+		renumber();
+
+		// path[ 0 ] is now followed by after, and before by path[ k - 1 ]; 
+		// the first merge may free before, which the second then skips:
+		mergeIfSmall( path[ 0 ] );
+		mergeIfSmall( before );
+
+		if( numSegments > maxSegments )
+			rebuild();
+	}
+
+	/**
+	 * Splits the segment of city, if need be, so that city is at its head.
+	 * The smaller part is moved to a new segment.
+	 */
+	private void splitBefore( int city ) {
+		final int s = parent[ city ];
+		if( head( s ) == city )
+			return;
+
+		// the internal cut is between u and v = succ[ u ]:
+		final int u = reversed[ s ] ? city : pred[ city ];
+		final int v = succ[ u ];
+		final int sizeToU = sequence[ u ] - sequence[ first[ s ] ] + 1;
+		final boolean moveLowPart = 2 * sizeToU <= segmentSize[ s ];
+
+		final int t = freeSegments[ --numFree ];
+		++numSegments;
+		reversed[ t ] = reversed[ s ];
+		succ[ u ] = -1;
+		pred[ v ] = -1;
+		if( moveLowPart ) {
+			first[ t ] = first[ s ];
+			last[ t ] = u;
+			first[ s ] = v;
+		}
+		else {
+			first[ t ] = v;
+			last[ t ] = last[ s ];
+			last[ s ] = u;
+		}
+		final int moved = moveLowPart ? sizeToU : segmentSize[ s ] - sizeToU;
+		segmentSize[ t ] = moved;
+		segmentSize[ s ] -= moved;
+		for( int c=first[ t ]; c>=0; c=succ[ c ] )
+			parent[ c ] = t;
+
+		// the low part precedes the high part in tour order unless s is reversed:
+		final boolean tBeforeS = moveLowPart != reversed[ s ];
+		if( tBeforeS ) {
+			final int p = segmentPrev[ s ];
+			segmentNext[ p ] = t;
+			segmentPrev[ t ] = p;
+			segmentNext[ t ] = s;
+			segmentPrev[ s ] = t;
+		}
+		else {
+			final int q = segmentNext[ s ];
+			segmentNext[ s ] = t;
+			segmentPrev[ t ] = s;
+			segmentNext[ t ] = q;
+			segmentPrev[ q ] = t;
+		}
+		renumber();
+	}
+
+	/**
+	 * Merges segment s with its successor if together they fit in groupSize,
+	 * moving the cities of the smaller into the larger.
+	 */
+	private void mergeIfSmall( int s ) {
+		final int t = segmentNext[ s ];
+		if( segmentSize[ s ] == 0 || s == t || segmentSize[ s ] + segmentSize[ t ] > groupSize )
+			return;
+
+		final int kept;
+		final int removed;
+		if( segmentSize[ s ] >= segmentSize[ t ] ) {
+			kept = s;
+			removed = t;
+			// append the cities of t, in tour order, to the tour end of s:
+			for( int c=head( t ), i=segmentSize[ t ]; i>0; --i ) {
+				final int following = reversed[ t ] ? pred[ c ] : succ[ c ];
+				if( reversed[ s ] )
+					prependInternal( s, c );
+				else
+					appendInternal( s, c );
+				c = following;
+			}
+		}
+		else {
+			kept = t;
+			removed = s;
+			// prepend the cities of s, in reverse tour order, to the tour start of t:
+			for( int c=tail( s ), i=segmentSize[ s ]; i>0; --i ) {
+				final int preceding = reversed[ s ] ? succ[ c ] : pred[ c ];
+				if( reversed[ t ] )
+					appendInternal( t, c );
+				else
+					prependInternal( t, c );
+				c = preceding;
+			}
+		}
+
+		final int p = segmentPrev[ removed ];
+		final int q = segmentNext[ removed ];
+		segmentNext[ p ] = q;
+		segmentPrev[ q ] = p;
+		segmentSize[ removed ] = 0;
+		freeSegments[ numFree++ ] = removed;
+		--numSegments;
+
+		if( sequence[ first[ kept ] ] < -MAX_SEQUENCE || sequence[ last[ kept ] ] > MAX_SEQUENCE ) {
+			int seq = 0;
+			for( int c=first[ kept ]; c>=0; c=succ[ c ] )
+				sequence[ c ] = seq++;
+		}
+		renumber();
+	}
+
+	private void appendInternal( int s, int city ) {
+		final int l = last[ s ];
+		parent[ city ] = s;
+		sequence[ city ] = sequence[ l ] + 1;
+		succ[ l ] = city;
+		pred[ city ] = l;
+		succ[ city ] = -1;
+		last[ s ] = city;
+		++segmentSize[ s ];
+	}
+
+	private void prependInternal( int s, int city ) {
+		final int f = first[ s ];
+		parent[ city ] = s;
+		sequence[ city ] = sequence[ f ] - 1;
+		pred[ f ] = city;
+		succ[ city ] = f;
+		pred[ city ] = -1;
+		first[ s ] = city;
+		++segmentSize[ s ];
+	}
+
+	private void renumber() {
+		int s = parent[ 0 ];
+		for( int r=0; r<numSegments; ++r, s=segmentNext[ s ] )
+			rank[ s ] = r;
+	}
+
+	///////////////////////////////
+
+	public boolean invariant() {
+		int total = 0;
+		int s = parent[ 0 ];
+		for( int r=0; r<numSegments; ++r, s=segmentNext[ s ] ) {
+			if( rank[ s ] != r || segmentPrev[ segmentNext[ s ] ] != s )
+				return false;
+			if( segmentSize[ s ] < 1 || segmentSize[ s ] > Math.max( groupSize, n ) )
+				return false;
+
+			int count = 0;
+			for( int c=first[ s ], previous=-1; c>=0; previous=c, c=succ[ c ] ) {
+				if( parent[ c ] != s || pred[ c ] != previous )
+					return false;
+				if( previous >= 0 && sequence[ c ] != sequence[ previous ] + 1 )
+					return false;
+				if( succ[ c ] < 0 && last[ s ] != c )
+					return false;
+				++count;
+			}
+			if( count != segmentSize[ s ] )
+				return false;
+			total += count;
+		}
+		if( s != parent[ 0 ] || total != n )
+			return false;
+
+		for( int c=0; c<n; ++c )
+			if( prev( next( c ) ) != c )
+				return false;
+
+		return ArrayUtilsUnchecked.isPermutation( toArrayForm().toArray() );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,42 @@
+package org.mitlware.solution.util;
+
+//////////////////////////////////////////////////////////////////////
+
+/**
+ * The 64-bit mixing functions of the SplitMix64 generator, on which
+ * the fingerprints of BitVector and ArrayForm and the slot selection
+ * of FitnessCache are built.
+ *
+ * <pre>
+ * &#64;inproceedings{Steele:2014,
+ *   author    = {Steele, Guy L. and Lea, Doug and Flood, Christine H.},
+ *   title     = {Fast Splittable Pseudorandom Number Generators},
+ *   booktitle = {Proceedings of the 2014 ACM International Conference on
+ *                Object Oriented Programming Systems Languages and Applications},
+ *   pages     = {453--472},
+ *   year      = {2014}
+ * }
+ * </pre>
+ */
+
+public final class SplitMix64 {
+
+	/** The golden gamma, the odd 64-bit integer nearest 2^64 / phi. */
+	public static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+	private SplitMix64() {}
+
+	///////////////////////////////
+
+	/**
+	 * The finalizer of SplitMix64: a bijection on longs in which
+	 * every input bit affects every output bit.
+	 */
+	public static long mix( long z ) {
+		z = ( z ^ ( z >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94d049bb133111ebL;
+		return z ^ ( z >>> 31 );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,95 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestBitMatrix {
+
+	private static BitMatrix randomMatrix( int numRows, int numColumns, Random random ) {
+		List< BitVector > rows = new ArrayList< BitVector >();
+		for( int i=0; i<numRows; ++i )
+			rows.add( new BitVector( numColumns, random ) );
+		return new BitMatrix( numColumns, rows );
+	}
+	
+	@Test
+	public void testTranspose64() {
+		Random random = new Random( 0x12345678 );
+		long [] a = new long [ 64 ];
+		for( int i=0; i<a.length; ++i )
+			a[ i ] = random.nextLong();
+		
+		long [] b = a.clone();
+		BitMatrix.transpose64( b );
+		for( int i=0; i<64; ++i )
+			for( int j=0; j<64; ++j )
+				assertEquals( ( a[ i ] >>> j ) & 1L, ( b[ j ] >>> i ) & 1L );
+		
+		BitMatrix.transpose64( b );
+		assertArrayEquals( a, b );
+	}
+
+	@Test
+	public void testTranspose() {
+		BitMatrix m = randomMatrix( 130, 75, new Random( 0x12345678 ) );
+		BitMatrix t = m.transpose();
+		assertEquals( 75, t.numRows() );
+		assertEquals( 130, t.numColumns() );
+		for( int i=0; i<m.numRows(); ++i )
+			for( int j=0; j<m.numColumns(); ++j )
+				assertEquals( m.get( i, j ), t.get( j, i ) );
+		
+		assertEquals( m, t.transpose() );
+		
+		BitVector column = new BitVector( m.numRows() );
+		m.getColumn( 70, column );
+		assertEquals( t.row( 70 ), column );
+	}
+	
+	@Test
+	public void testColumnCounts() {
+		BitMatrix m = randomMatrix( 100, 150, new Random( 0x12345678 ) );
+		int [] expected = new int [ m.numColumns() ];
+		for( int i=0; i<m.numRows(); ++i )
+			for( int j=0; j<m.numColumns(); ++j )
+				if( m.get( i, j ) )
+					++expected[ j ];
+		
+		assertArrayEquals( expected, m.columnCounts() );
+	}
+	
+	@Test
+	public void testColumnWords() {
+		BitMatrix m = randomMatrix( 70, 10, new Random( 0x12345678 ) );
+		long [] words = m.columnWords( new long [ m.numColumns() * m.numRowBlocks() ] );
+		for( int i=0; i<m.numRows(); ++i )
+			for( int j=0; j<m.numColumns(); ++j ) {
+				final long word = words[ j * m.numRowBlocks() + i / 64 ];
+				assertEquals( m.get( i, j ), ( word & ( 1L << i ) ) != 0L );
+			}
+	}
+	
+	@Test
+	public void testRows() {
+		BitMatrix m = new BitMatrix( 3, 5 );
+		m.row( 1 ).set( 2 );
+		assertEquals( true, m.get( 1, 2 ) );
+		
+		BitVector copy = new BitVector( 5 );
+		m.getRow( 1, copy );
+		assertEquals( m.row( 1 ), copy );
+		
+		m.setRow( 2, BitVector.fromBinaryString( "10101" ) );
+		assertArrayEquals( new int [] { 1, 0, 2, 0, 1 }, m.columnCounts() );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -7,8 +7,16 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
@@ -604,6 +612,431 @@ public class TestBitVector {
 		assertEquals(BitVector.HammingDistance(a, full), 8);
 		assertEquals(BitVector.HammingDistance(blank, full), 20);
 	}
+
+	@Test
+	public void testNotMasksTail() {
+		BitVector a = new BitVector(70);
+		a.not();
+		assertEquals(70, a.cardinality());
+		assertTrue(a.invariant());
+		assertEquals(-1, a.nextClearBit(0));
+		
+		a.flip(0, 70);
+		assertTrue(a.isEmpty());
+		assertTrue(a.invariant());
+	}
+	
+	@Test
+	public void testMultiWord() {
+		Random random = new Random(0x12345678);
+		final int n = 200;
+		BitSet x = new BitSet(n);
+		BitSet y = new BitSet(n);
+		for (int i = 0; i < n; i++) {
+			x.set(i, random.nextBoolean());
+			y.set(i, random.nextBoolean());
+		}
+		BitVector a = new BitVector(x, 0, n);
+		BitVector b = new BitVector(y, 0, n);
+		
+		BitSet xy = (BitSet)x.clone();
+		xy.xor(y);
+		assertEquals(xy.cardinality(), BitVector.HammingDistance(a, b));
+		
+		a.and(b);
+		x.and(y);
+		assertEquals(new BitVector(x, 0, n), a);
+		
+		for (int from = 0; from < n; from += 13)
+			for (int to = from; to <= n; to += 29)
+				assertEquals(new BitVector(y, from, to), b.subVector(from, to));
+		
+		b.set(63, 129);
+		y.set(63, 129);
+		assertEquals(new BitVector(y, 0, n), b);
+		b.clear(1, 65);
+		y.clear(1, 65);
+		assertEquals(new BitVector(y, 0, n), b);
+		assertEquals(y.nextSetBit(1), b.nextSetBit(1));
+		assertEquals(y.nextClearBit(65), b.nextClearBit(65));
+	}
+
+	@Test
+	public void testSetBitStreams() {
+		BitVector a = new BitVector(1000, new Random(0x12345678));
+		
+		List<Integer> expected = new ArrayList<>();
+		for (Iterator<Integer> it = a.sparseIterator(); it.hasNext(); )
+			expected.add(it.next());
+		
+		List<Integer> actual = new ArrayList<>();
+		a.forEachSetBit(actual::add);
+		assertEquals(expected, actual);
+		
+		assertArrayEquals(a.setBits().toArray(), a.setBits().parallel().toArray());
+		assertEquals(expected, a.setBits().boxed().collect(Collectors.toList()));
+		
+		BitVector b = new BitVector(a);
+		b.not();
+		assertArrayEquals(b.setBits().toArray(), a.clearBits().parallel().toArray());
+		assertEquals(a.length(), a.setBits().count() + a.clearBits().count());
+		
+		assertEquals(0, new BitVector(0).setBits().count());
+		assertEquals(70, new BitVector(70).clearBits().count());
+	}
+
+	@Test
+	public void testRandomFlip() {
+		Random random = new Random(0x12345678);
+		final int n = 10000;
+		BitVector a = new BitVector(n);
+		
+		assertEquals(0, a.randomFlip(0.0, random));
+		assertTrue(a.isEmpty());
+		assertEquals(n, a.randomFlip(1.0, random));
+		assertEquals(n, a.cardinality());
+		a.clear();
+		
+		int flips = 0;
+		final int numTrials = 100;
+		for (int i = 0; i < numTrials; i++) {
+			BitVector b = new BitVector(a);
+			final int count = b.randomFlip(0.01, random);
+			assertEquals(count, b.cardinality());
+			assertTrue(b.invariant());
+			flips += count;
+		}
+		// expect 100 flips per trial 
+		assertTrue(Math.abs(flips - 100 * numTrials) < 5 * numTrials);
+	}
+	
+	@Test
+	public void testConstructorsRandomWords() {
+		BitVector a = new BitVector(1000, new Random(1));
+		assertTrue(a.invariant());
+		assertTrue(Math.abs(a.cardinality() - 500) < 100);
+		
+		BitVector b = new BitVector(70, new Random(1));
+		assertTrue(b.invariant());
+	}
+
+	@Test
+	public void testFingerprint() {
+		Random random = new Random(0x12345678);
+		BitVector a = new BitVector(300, random);
+		BitVector b = new BitVector(a);
+		a.enableFingerprint();
+		assertTrue(a.isFingerprintEnabled());
+		assertFalse(b.isFingerprintEnabled());
+		assertEquals(a.fingerprint64(), b.fingerprint64());
+		
+		BitVector mask = new BitVector(300, random);
+		for (int i = 0; i < 1000; i++) {
+			switch (random.nextInt(8)) {
+			case 0: { int j = random.nextInt(300); a.flip(j); b.flip(j); break; }
+			case 1: { int j = random.nextInt(300); a.set(j); b.set(j); break; }
+			case 2: { int j = random.nextInt(300); a.clear(j); b.clear(j); break; }
+			case 3: { a.xor(mask); b.xor(mask); break; }
+			case 4: { a.not(); b.not(); break; }
+			case 5: { a.set(10, 200, true); b.set(10, 200, true); break; }
+			case 6: { a.randomFlip(0.01, new Random(i)); b.randomFlip(0.01, new Random(i)); break; }
+			default: { a.or(mask); b.or(mask); a.andNot(mask); b.andNot(mask); break; }
+			}
+			assertEquals(a, b);
+			assertEquals(b.fingerprint64(), a.fingerprint64());
+			assertEquals(b.hashCode(), a.hashCode());
+		}
+		
+		BitVector c = a.clone();
+		assertTrue(c.isFingerprintEnabled());
+		c.flip(0);
+		assertNotEquals(a.fingerprint64(), c.fingerprint64());
+		c.flip(0);
+		assertEquals(a.fingerprint64(), c.fingerprint64());
+		
+		assertNotEquals(new BitVector(64).fingerprint64(), new BitVector(65).fingerprint64());
+	}
+
+	@Test
+	public void testCloneIsCopyOnWrite() {
+		Random random = new Random(0x12345678);
+		BitVector a = new BitVector(300, random);
+		BitVector original = new BitVector(a);
+		BitVector b = a.clone();
+		BitVector c = b.clone();
+		
+		b.flip(3);
+		assertEquals(original, a);
+		assertEquals(original, c);
+		assertNotEquals(original, b);
+		
+		a.not();
+		assertEquals(original, c);
+		c.or(a);
+		assertEquals(300, c.cardinality());
+		assertNotEquals(c, b);
+		
+		BitVector d = c.clone();
+		BitVectorCrossover.uniform(a, b, random, d, null);
+		assertEquals(300, c.cardinality());
+		BitVector e = d.clone();
+		d.clear();
+		assertFalse(e.isEmpty());
+		d.set(0, 300);
+		assertEquals(c, d);
+	}
+
+	@Test
+	public void testCloneOfLongVector() {
+		Random random = new Random(0x12345678);
+		final int n = 300000;
+		BitVector a = new BitVector(n, random);
+		BitVector original = new BitVector(a);
+		BitVector b = a.clone();
+		BitVector c = b.clone();
+		
+		b.flip(5);
+		b.set(200000, 200100);
+		assertEquals(original, a);
+		assertEquals(original, c);
+		assertEquals(1 + 100 - original.cardinality(200000, 200100), BitVector.HammingDistance(a, b));
+		
+		a.xor(c, 0, 70000);
+		assertTrue(a.cardinality(0, 70000) == 0 && a.cardinality(70000, n) == original.cardinality(70000, n));
+		assertEquals(original, c);
+		c.not();
+		assertEquals(n, BitVector.HammingDistance(original, c));
+		assertEquals(b, b.clone().clone());
+		
+		long [] words = original.toLongArray();
+		BitVector wrapped = BitVector.wrap(words, n);
+		assertEquals(original, wrapped);
+		assertEquals(wrapped, original);
+		wrapped.xor(original);
+		assertTrue(wrapped.isEmpty());
+		assertEquals(0L, words[3000]);
+		BitVector copy = wrapped.clone();
+		copy.or(original);
+		assertEquals(original, copy);
+		assertTrue(wrapped.isEmpty());
+	}
+
+	@Test
+	public void testRankSelect() {
+		Random random = new Random(0x12345678);
+		for (int n : new int[] { 1, 63, 64, 65, 1000, 5000 }) {
+			BitVector a = new BitVector(n);
+			a.randomFlip(n < 100 ? 0.5 : 0.05, random);
+			
+			int rank = 0, rankClear = 0;
+			for (int i = 0; i < n; i++) {
+				assertEquals(rank, a.rank(i));
+				if (a.get(i)) 
+					assertEquals(i, a.select(rank++));
+				else
+					assertEquals(i, a.selectClear(rankClear++));
+			}
+			assertEquals(rank, a.rank(n));
+			assertEquals(a.cardinality(), rank);
+			
+			if (rank > 0)
+				assertTrue(a.get(a.randomSetBit(random)));
+			if (rankClear > 0)
+				assertFalse(a.get(a.randomClearBit(random)));
+		}
+		
+		BitVector b = new BitVector(200);
+		assertEquals(-1, b.randomSetBit(random));
+		assertFalse(b.get(b.randomClearBit(random)));
+		b.set(150);
+		assertEquals(150, b.randomSetBit(random));
+		b.clear(150);
+		b.set(42);
+		assertEquals(42, b.select(0));
+		assertEquals(1, b.rank(200));
+	}
+
+	@Test
+	public void testShiftsRotateReverse() {
+		Random random = new Random(0x12345678);
+		for (int n : new int[] { 1, 7, 63, 64, 65, 128, 130, 300, 1000 }) {
+			BitVector a = new BitVector(n, random);
+			for (int d : new int[] { 0, 1, 5, 63, 64, 65, 127, n - 1, n, n + 3 }) {
+				if (d < 0)
+					continue;
+				BitVector left = a.clone(), right = a.clone(), rotated = a.clone();
+				left.shiftLeft(d);
+				right.shiftRight(d);
+				rotated.rotate(d);
+				for (int i = 0; i < n; i++) {
+					assertEquals(i >= d && a.get(i - d), left.get(i));
+					assertEquals(i + d < n && a.get(i + d), right.get(i));
+					assertEquals(a.get(i), rotated.get((i + d) % n));
+				}
+				assertTrue(left.invariant());
+				rotated.rotate(-d);
+				assertEquals(a, rotated);
+			}
+			BitVector reversed = a.clone();
+			reversed.reverse();
+			assertTrue(reversed.invariant());
+			for (int i = 0; i < n; i++)
+				assertEquals(a.get(i), reversed.get(n - 1 - i));
+			reversed.reverse();
+			assertEquals(a, reversed);
+		}
+	}
+
+	@Test
+	public void testSliceConcat() {
+		Random random = new Random(0x12345678);
+		BitVector a = new BitVector(200, random);
+		BitVector b = new BitVector(77, random);
+		
+		BitVectorSlice s = a.slice(13, 150);
+		assertEquals(137, s.length());
+		assertEquals(a.subVector(13, 150), s.toBitVector());
+		assertEquals(s.toBitVector().cardinality(), s.cardinality());
+		assertEquals(a.subVector(20, 90), s.slice(7, 77).toBitVector());
+		assertEquals(a.get(13), s.get(0));
+		a.flip(13);
+		assertEquals(a.get(13), s.get(0));
+		
+		BitVector c = BitVector.concat(a, b);
+		assertEquals(277, c.length());
+		assertTrue(c.invariant());
+		assertEquals(a, c.subVector(0, 200));
+		assertEquals(b, c.subVector(200, 277));
+		
+		BitVector d = BitVector.concat(a.slice(0, 90), b.slice(5, 70), a.slice(90, 90), a.slice(90, 200));
+		assertEquals(265, d.length());
+		assertEquals(a.subVector(0, 90), d.subVector(0, 90));
+		assertEquals(b.subVector(5, 70), d.subVector(90, 155));
+		assertEquals(a.subVector(90, 200), d.subVector(155, 265));
+		assertEquals(0, BitVector.concat(new BitVector[0]).length());
+	}
+
+	@Test
+	public void testRangeAndMaskOps() {
+		Random random = new Random(0x12345678);
+		final int n = 200;
+		BitVector a = new BitVector(n, random);
+		BitVector b = new BitVector(n, random);
+		BitVector mask = new BitVector(n);
+		int[][] ranges = { { 0, 0 }, { 0, 200 }, { 3, 9 }, { 60, 70 }, { 64, 128 }, { 10, 190 }, { 199, 200 } };
+		for (int[] r : ranges) {
+			mask.clear();
+			if (r[0] < r[1])
+				mask.set(r[0], r[1]);
+			BitVector ab = a.clone();
+			ab.xor(b);
+			
+			assertEquals(a.subVector(r[0], r[1]).cardinality(), a.cardinality(r[0], r[1]));
+			assertEquals(a.subVector(r[0], r[1]).cardinality(), a.cardinality(mask));
+			int hamming = ab.subVector(r[0], r[1]).cardinality();
+			assertEquals(hamming, BitVector.HammingDistance(a, b, r[0], r[1]));
+			assertEquals(hamming, BitVector.HammingDistance(a, b, mask));
+			boolean intersects = false;
+			for (int i = r[0]; i < r[1]; i++)
+				intersects |= a.get(i) && b.get(i);
+			assertEquals(intersects, a.intersects(b, r[0], r[1]));
+			assertEquals(intersects, a.intersects(b, mask));
+			
+			for (int op = 0; op < 4; op++) {
+				BitVector expected = a.clone(), byRange = a.clone(), byMask = a.clone();
+				byRange.enableFingerprint();
+				for (int i = r[0]; i < r[1]; i++) {
+					boolean x = a.get(i), y = b.get(i);
+					expected.set(i, op == 0 ? x & y : op == 1 ? x & !y : op == 2 ? x | y : x ^ y);
+				}
+				switch (op) {
+				case 0: byRange.and(b, r[0], r[1]); byMask.and(b, mask); break;
+				case 1: byRange.andNot(b, r[0], r[1]); byMask.andNot(b, mask); break;
+				case 2: byRange.or(b, r[0], r[1]); byMask.or(b, mask); break;
+				default: byRange.xor(b, r[0], r[1]); byMask.xor(b, mask);
+				}
+				assertEquals(expected, byRange);
+				assertEquals(expected, byMask);
+				assertEquals(new BitVector(byRange).fingerprint64(), byRange.fingerprint64());
+			}
+		}
+	}
+
+	@Test
+	public void testConversions() {
+		assertEquals(BitVector.fromBinaryString("11111111111111111111111111111110"), BitVector.fromInt(-2));
+		assertEquals(BitVector.fromBinaryString("1010"), BitVector.fromLong(-6L, 4));
+		assertEquals(0, BitVector.fromLong(-1L, 0).length());
+		
+		Random random = new Random(0x12345678);
+		for (int n : new int[] { 1, 8, 63, 64, 65, 130 }) {
+			BitVector a = new BitVector(n, random);
+			a.set(n - 1);
+			BigInteger x = a.toBigInteger();
+			assertEquals(new BigInteger(a.toString(), 2), x);
+			assertEquals(a, new BitVector(n, x));
+		}
+	}
+
+	@Test
+	public void testWrapAndBuffers() {
+		long[] words = { -1L, -1L };
+		BitVector a = BitVector.wrap(words, 100);
+		assertEquals(-1L >>> 28, words[1]);
+		assertEquals(100, a.cardinality());
+		a.clear(3);
+		assertEquals(~8L, words[0]);
+		words[0] = 0L;
+		a.wrappedArrayChanged();
+		assertEquals(36, a.cardinality());
+		
+		BitVector b = a.clone();
+		b.set(3);
+		a.set(5);
+		assertEquals(32L, words[0]);
+		assertFalse(b.get(5));
+		assertArrayEquals(words, a.toLongArray());
+		assertNotSame(words, a.toLongArray());
+		
+		Random random = new Random(0x12345678);
+		for (int n : new int[] { 1, 8, 13, 64, 65, 130 }) {
+			BitVector c = new BitVector(n, random);
+			ByteBuffer bytes = ByteBuffer.allocate(3 + (n + 7) / 8 + 5);
+			bytes.position(3);
+			c.writeTo(bytes);
+			assertEquals(3 + (n + 7) / 8, bytes.position());
+			bytes.position(3);
+			byte[] expected = Arrays.copyOf(BitSet.valueOf(c.toLongArray()).toByteArray(), (n + 7) / 8);
+			for (int k = 0; k < expected.length; k++)
+				assertEquals(expected[k], bytes.get(3 + k));
+			assertEquals(c, BitVector.fromByteBuffer(bytes, n));
+			BitVector d = new BitVector(n);
+			d.readFrom(bytes);
+			assertEquals(c, d);
+			assertEquals(3 + (n + 7) / 8, bytes.position());
+			
+			LongBuffer longs = LongBuffer.allocate(10);
+			longs.position(1);
+			c.writeTo(longs);
+			longs.position(1);
+			assertEquals(c, BitVector.fromLongBuffer(longs, n));
+		}
+		
+		LongBuffer exact = LongBuffer.wrap(new long[2]);
+		BitVector e = BitVector.fromLongBuffer(exact, 70);
+		e.set(69);
+		assertEquals(32L, exact.get(1));
+		
+		// a limit short of the words required is rejected, not wrapped:
+		exact.limit(1);
+		boolean rejected = false;
+		try {
+			BitVector.fromLongBuffer(exact, 70);
+		} catch (IllegalArgumentException ex) {
+			rejected = true;
+		}
+		assertTrue(rejected);
+	}
 }
 
 // End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,93 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestBitVectorArchive {
+
+	private static void checkContents( BitVectorArchive archive, List< BitVector > expected ) {
+		assertEquals( expected.size(), archive.size() );
+		BitVector x = new BitVector( archive.length() );
+		for( int i=0; i<expected.size(); ++i ) {
+			archive.get( i, x );
+			assertEquals( expected.get( i ), x );
+			assertEquals( expected.get( i ).get( 99 ), archive.get( i, 99 ) );
+		}
+		archive.forEach( ( y, i ) -> assertEquals( expected.get( (int)i ), y ) );
+	}
+	
+	@Test
+	public void testDirect() {
+		Random random = new Random( 0x12345678 );
+		List< BitVector > expected = new ArrayList< BitVector >();
+		BitVectorArchive archive = BitVectorArchive.allocateDirect( 100 );
+		for( int i=0; i<1000; ++i ) {
+			BitVector x = new BitVector( 100, random );
+			expected.add( x );
+			assertEquals( i, archive.append( x ) );
+		}
+		checkContents( archive, expected );
+		
+		BitVector query = expected.get( 7 );
+		assertEquals( 0, archive.HammingDistance( 7, query ) );
+		List< Long > hits = new ArrayList< Long >();
+		archive.withinRadius( query, 0, hits::add );
+		assertEquals( 7L, (long)hits.get( 0 ) );
+		
+		archive.set( 3, query );
+		assertEquals( query, archive.get( 3 ) );
+	}
+	
+	@Test
+	public void testReopen() throws IOException {
+		Path file = Files.createTempFile( "archive", ".bva" );
+		try {
+			Random random = new Random( 0x12345678 );
+			List< BitVector > expected = new ArrayList< BitVector >();
+			try( BitVectorArchive archive = BitVectorArchive.create( file, 130 ) ) {
+				for( int i=0; i<500; ++i ) {
+					BitVector x = new BitVector( 130, random );
+					expected.add( x );
+					archive.append( x );
+				}
+				archive.force();
+			}
+			
+			try( BitVectorArchive archive = BitVectorArchive.open( file ) ) {
+				assertEquals( 130, archive.length() );
+				checkContents( archive, expected );
+			}
+		}
+		finally {
+			Files.deleteIfExists( file );
+		}
+	}
+	
+	@Test
+	public void testSmallFileStaysSmall() throws IOException {
+		Path file = Files.createTempFile( "archive", ".bva" );
+		try {
+			try( BitVectorArchive archive = BitVectorArchive.create( file, 100 ) ) {
+				archive.append( new BitVector( 100, new Random( 1 ) ) );
+				archive.force();
+			}
+			assertTrue( Files.size( file ) < 1 << 16 );
+		}
+		finally {
+			Files.deleteIfExists( file );
+		}
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
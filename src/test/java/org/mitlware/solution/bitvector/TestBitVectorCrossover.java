@@ -0,0 +1,123 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestBitVectorCrossover {
+
+	private static BitVector bitwise( BitVector parent1, BitVector parent2, BitVector mask ) {
+		BitVector result = new BitVector( parent1.length() );
+		for( int i=0; i<result.length(); ++i )
+			result.set( i, mask.get( i ) ? parent2.get( i ) : parent1.get( i ) );
+		return result;
+	}
+	
+	@Test
+	public void testOnePoint() {
+		BitVector zeros = new BitVector( 8 );
+		BitVector ones = new BitVector( 8 );
+		ones.not();
+		
+		BitVector child1 = new BitVector( 8 );
+		BitVector child2 = new BitVector( 8 );
+		BitVectorCrossover.onePoint( zeros, ones, 3, child1, child2 );
+		assertEquals( BitVector.fromBinaryString( "11111000" ), child1 );
+		assertEquals( BitVector.fromBinaryString( "00000111" ), child2 );
+	}
+	
+	@Test
+	public void testKPointAgreesWithBitwise() {
+		Random random = new Random( 0x12345678 );
+		final int n = 300;
+		BitVector parent1 = new BitVector( n, random );
+		BitVector parent2 = new BitVector( n, random );
+		
+		int [] points = new int [] { 0, 5, 64, 64, 100, 127, 128, 250, 300 };
+		BitVector mask = new BitVector( n );
+		boolean state = false;
+		for( int i=0, k=0; i<n; ++i ) {
+			while( k < points.length && points[ k ] == i ) {
+				state = !state;
+				++k;
+			}
+			mask.set( i, state );
+		}
+		
+		BitVector child1 = new BitVector( n );
+		BitVector child2 = new BitVector( n );
+		BitVectorCrossover.kPoint( parent1, parent2, points, child1, child2 );
+		assertEquals( bitwise( parent1, parent2, mask ), child1 );
+		assertEquals( bitwise( parent2, parent1, mask ), child2 );
+		
+		BitVectorCrossover.masked( parent1, parent2, mask, child1, child2 );
+		assertEquals( bitwise( parent1, parent2, mask ), child1 );
+		assertEquals( bitwise( parent2, parent1, mask ), child2 );
+	}
+	
+	@Test
+	public void testRandomOperatorsConserveBits() {
+		Random random = new Random( 0x12345678 );
+		final int n = 200;
+		for( int trial=0; trial<100; ++trial ) {
+			BitVector parent1 = new BitVector( n, random );
+			BitVector parent2 = new BitVector( n, random );
+			BitVector child1 = new BitVector( n );
+			BitVector child2 = new BitVector( n );
+			
+			switch( trial % 3 ) {
+			case 0 : BitVectorCrossover.onePoint( parent1, parent2, random, child1, child2 ); break;
+			case 1 : BitVectorCrossover.kPoint( parent1, parent2, 4, random, child1, child2 ); break;
+			default : BitVectorCrossover.uniform( parent1, parent2, random, child1, child2 ); break;
+			}
+			
+			// at every position the children hold the two parental bits between them
+			BitVector same = new BitVector( parent1 );
+			same.xor( parent2 );
+			same.not();
+			BitVector c = new BitVector( child1 );
+			c.xor( child2 );
+			c.not();
+			assertEquals( same, c );
+			assertEquals( parent1.cardinality() + parent2.cardinality(), 
+				child1.cardinality() + child2.cardinality() );
+			assertTrue( child1.invariant() && child2.invariant() );
+		}
+	}
+	
+	@Test
+	public void testKPointDrawsDistinctPoints() {
+		Random random = new Random( 0x12345678 );
+		final int n = 40;
+		BitVector zeros = new BitVector( n );
+		BitVector ones = new BitVector( n );
+		ones.not();
+		BitVector child = new BitVector( n );
+		int [] scratch = new int [ n ];
+		for( int k=0; k<n; ++k ) {
+			// each of k distinct points switches parents once:
+			BitVectorCrossover.kPoint( zeros, ones, k, random, scratch, child, null );
+			int switches = 0;
+			for( int i=1; i<n; ++i )
+				if( child.get( i ) != child.get( i - 1 ) )
+					++switches;
+			assertEquals( k, switches );
+			assertTrue( !child.get( 0 ) );
+		}
+	}
+	
+	@Test
+	public void testChildMayAliasParent() {
+		BitVector parent1 = BitVector.fromBinaryString( "00000000" );
+		BitVector parent2 = BitVector.fromBinaryString( "11111111" );
+		BitVectorCrossover.onePoint( parent1, parent2, 4, parent1, null );
+		assertEquals( BitVector.fromBinaryString( "11110000" ), parent1 );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,99 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestBitVectorDecoder {
+
+	private static long referenceCode( BitVector x, int from, int width, boolean gray ) {
+		long result = 0L;
+		boolean previous = false;
+		for( int j=width - 1; j>=0; --j ) {
+			boolean bit = x.get( from + j );
+			if( gray )
+				bit = previous = previous ^ bit;
+			if( bit )
+				result |= 1L << j;
+		}
+		return result;
+	}
+
+	@Test
+	public void testAgreesWithPerBitDecoding() {
+		Random random = new Random( 0x12345678 );
+		int [] widths = { 1, 10, 64, 7, 33, 63, 20 };
+		double [] lower = { 0, -5, 0, 1, -1, 0, 10 };
+		double [] upper = { 1, 5, 1, 2, 1, 1, 20 };
+		for( BitVectorDecoder.Coding coding : BitVectorDecoder.Coding.values() ) {
+			BitVectorDecoder decoder = new BitVectorDecoder( widths, lower, upper, coding );
+			assertEquals( 198, decoder.length() );
+			for( int trial=0; trial<20; ++trial ) {
+				BitVector x = new BitVector( decoder.length(), random );
+				double [] values = decoder.decode( x );
+				for( int v=0; v<widths.length; ++v ) {
+					final long code = referenceCode( x, decoder.offset( v ), widths[ v ], coding == BitVectorDecoder.Coding.GRAY );
+					assertEquals( code, decoder.code( x, v ) );
+					if( widths[ v ] < 64 ) {
+						final double expected = lower[ v ] + code * ( upper[ v ] - lower[ v ] ) / ( ( 1L << widths[ v ] ) - 1 );
+						assertEquals( expected, values[ v ], 1e-9 * ( upper[ v ] - lower[ v ] ) );
+					}
+					assertEquals( values[ v ], decoder.decode( x, v ), 0.0 );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testBounds() {
+		BitVectorDecoder decoder = new BitVectorDecoder( 3, 64, -1.0, 1.0, BitVectorDecoder.Coding.BINARY );
+		BitVector x = new BitVector( 192 );
+		x.set( 64, 128 );
+		assertArrayEquals( new double [] { -1.0, 1.0, -1.0 }, decoder.decode( x ), 1e-12 );
+
+		BitVectorDecoder gray = new BitVectorDecoder( 2, 4, 0.0, 15.0, BitVectorDecoder.Coding.GRAY );
+		int [] codes = new int [ 2 ];
+		gray.decodeCodes( BitVector.fromBinaryString( "10000111" ), codes, 0 );
+		assertArrayEquals( new int [] { 5, 15 }, codes );
+	}
+
+	@Test
+	public void testBatchAndUpdate() {
+		Random random = new Random( 0x12345678 );
+		BitVectorDecoder decoder = new BitVectorDecoder( 9, 13, 0.0, 1.0, BitVectorDecoder.Coding.GRAY );
+		List< BitVector > population = new ArrayList< BitVector >();
+		for( int i=0; i<50; ++i )
+			population.add( new BitVector( decoder.length(), random ) );
+
+		double [] flat = new double [ 50 * 9 ];
+		double [] flatMatrix = new double [ 50 * 9 ];
+		decoder.decode( population, flat, true );
+		decoder.decode( new BitMatrix( decoder.length(), population ), flatMatrix, false );
+		assertArrayEquals( flat, flatMatrix, 0.0 );
+		for( int i=0; i<50; ++i )
+			for( int v=0; v<9; ++v )
+				assertEquals( decoder.decode( population.get( i ), v ), flat[ i * 9 + v ], 0.0 );
+
+		BitVector x = population.get( 0 );
+		double [] values = decoder.decode( x );
+		for( int i=0; i<200; ++i ) {
+			final int bit = random.nextInt( x.length() );
+			x.flip( bit );
+			assertEquals( bit / 13, decoder.update( x, bit, values ) );
+			assertArrayEquals( decoder.decode( x ), values, 0.0 );
+		}
+
+		x.flip( 20, 70 );
+		decoder.update( x, 20, 70, values );
+		assertArrayEquals( decoder.decode( x ), values, 0.0 );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,51 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestConcurrentBitVector {
+
+	@Test
+	public void testSingleThreaded() {
+		ConcurrentBitVector a = new ConcurrentBitVector( 70 );
+		assertTrue( a.add( 69 ) );
+		assertFalse( a.add( 69 ) );
+		assertTrue( a.getAndSet( 69, false ) );
+		assertFalse( a.getAndFlip( 3 ) );
+		assertTrue( a.get( 3 ) );
+		a.set( 64 );
+		assertEquals( 2, a.cardinality() );
+		
+		BitVector expected = new BitVector( 70 );
+		expected.set( 3 );
+		expected.set( 64 );
+		assertEquals( expected, a.snapshot() );
+		assertEquals( expected, new ConcurrentBitVector( expected ).snapshot() );
+	}
+	
+	@Test
+	public void testConcurrentAdd() {
+		final int n = 1000;
+		ConcurrentBitVector visited = new ConcurrentBitVector( n );
+		AtomicInteger firstVisits = new AtomicInteger();
+		IntStream.range( 0, 100 * n ).parallel().forEach( i -> {
+			if( visited.add( ( i * 7919 ) % n ) )
+				firstVisits.incrementAndGet();
+		} );
+		assertEquals( n, firstVisits.get() );
+		assertEquals( n, visited.cardinality() );
+		
+		IntStream.range( 0, 2 * n ).parallel().forEach( i -> visited.flip( i % n ) );
+		assertEquals( n, visited.cardinality() );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,61 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestFixedWeightBitVector {
+
+	@Test
+	public void testRandomSwapsPreserveWeight() {
+		Random random = new Random( 0x12345678 );
+		FixedWeightBitVector x = new FixedWeightBitVector( 200, 17, random );
+		assertEquals( 17, x.weight() );
+		assertTrue( x.invariant() );
+		
+		for( int i=0; i<1000; ++i ) {
+			FixedWeightBitVector before = x.clone();
+			final long move = x.randomSwap( random );
+			assertFalse( x.get( FixedWeightBitVector.out( move ) ) );
+			assertTrue( x.get( FixedWeightBitVector.in( move ) ) );
+			assertEquals( 17, x.toBitVector().cardinality() );
+			assertTrue( x.invariant() );
+			
+			if( i % 2 == 0 ) {
+				x.undo( move );
+				assertEquals( before, x );
+				assertTrue( x.invariant() );
+			}
+		}
+	}
+	
+	@Test
+	public void testNeighbourhood() {
+		FixedWeightBitVector x = new FixedWeightBitVector( BitVector.fromBinaryString( "0110" ) );
+		assertEquals( 2, x.weight() );
+		
+		int [] count = new int [ 1 ];
+		x.forEachSwap( ( out, in ) -> {
+			assertTrue( x.get( out ) );
+			assertFalse( x.get( in ) );
+			++count[ 0 ];
+		} );
+		assertEquals( 4, count[ 0 ] );
+		
+		x.swap( 1, 0 );
+		assertEquals( BitVector.fromBinaryString( "0101" ), x.toBitVector() );
+	}
+	
+	@Test( expected = IllegalArgumentException.class )
+	public void testSwapRequiresSetOut() {
+		new FixedWeightBitVector( BitVector.fromBinaryString( "0110" ) ).swap( 0, 3 );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,82 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestGrayCodeEnumerator {
+
+	@Test
+	public void testVisitsEachVectorOnceByOneFlip() {
+		final int n = 10;
+		final BitSet seen = new BitSet();
+		final BitVector [] previous = { null };
+		final long [] rank = { 0 };
+		GrayCodeEnumerator.enumerate( n, ( x, flipped ) -> {
+			final int value = (int)x.getWord( 0 );
+			assertTrue( !seen.get( value ) );
+			seen.set( value );
+			assertEquals( rank[ 0 ], GrayCodeEnumerator.rank( x ) );
+			assertEquals( GrayCodeEnumerator.vector( n, rank[ 0 ]++ ), x );
+			if( previous[ 0 ] == null )
+				assertEquals( -1, flipped );
+			else {
+				assertEquals( 1, BitVector.HammingDistance( previous[ 0 ], x ) );
+				assertTrue( previous[ 0 ].get( flipped ) != x.get( flipped ) );
+			}
+			previous[ 0 ] = x.clone();
+		} );
+		assertEquals( 1 << n, seen.cardinality() );
+	}
+
+	private static final class OneMaxSum implements GrayCodeEnumerator.FlipConsumer {
+		long count = 0;
+		long sum = 0;
+		int fitness;
+
+		@Override
+		public void accept( BitVector x, int flippedIndex ) {
+			if( flippedIndex < 0 )
+				fitness = x.cardinality();
+			else
+				fitness += x.get( flippedIndex ) ? 1 : -1;
+
+			++count;
+			sum += fitness;
+		}
+	}
+
+	@Test
+	public void testParallel() {
+		final int n = 18;
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		List< OneMaxSum > parts;
+		try {
+			parts = GrayCodeEnumerator.enumerate( n, OneMaxSum::new, pool );
+		}
+		finally {
+			pool.shutdown();
+		}
+		assertTrue( parts.size() > 1 );
+		long count = 0, sum = 0;
+		for( OneMaxSum part : parts ) {
+			count += part.count;
+			sum += part.sum;
+		}
+		assertEquals( 1L << n, count );
+		assertEquals( n * ( 1L << ( n - 1 ) ), sum );
+
+		OneMaxSum all = new OneMaxSum();
+		GrayCodeEnumerator.enumerate( 0, all );
+		assertEquals( 1, all.count );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,79 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestHammingBKTree {
+
+	@Test
+	public void testAgreesWithLinearScan() {
+		Random random = new Random( 0x12345678 );
+		final int n = 40;
+		HammingBKTree tree = new HammingBKTree( n );
+		List< BitVector > archive = new ArrayList< BitVector >();
+		for( int i=0; i<2000; ++i ) {
+			BitVector x = new BitVector( n, random );
+			archive.add( x );
+			tree.add( x );
+		}
+		assertEquals( archive.size(), tree.size() );
+		
+		for( int q=0; q<50; ++q ) {
+			BitVector query = new BitVector( n, random );
+			List< Integer > distances = new ArrayList< Integer >();
+			for( BitVector x : archive )
+				distances.add( BitVector.HammingDistance( query, x ) );
+			Collections.sort( distances );
+			
+			List< BitVector > nearest = tree.nearest( query, 10 );
+			assertEquals( 10, nearest.size() );
+			for( int i=0; i<nearest.size(); ++i )
+				assertEquals( (int)distances.get( i ), BitVector.HammingDistance( query, nearest.get( i ) ) );
+			
+			final int radius = distances.get( 20 );
+			int expected = 0;
+			for( int d : distances )
+				if( d <= radius )
+					++expected;
+			assertEquals( expected, tree.withinRadius( query, radius ).size() );
+		}
+	}
+	
+	@Test
+	public void testRemove() {
+		Random random = new Random( 0x12345678 );
+		HammingBKTree tree = new HammingBKTree( 16 );
+		List< BitVector > archive = new ArrayList< BitVector >();
+		for( int i=0; i<500; ++i ) {
+			BitVector x = new BitVector( 16, random );
+			archive.add( x );
+			tree.add( x );
+		}
+		tree.add( archive.get( 0 ) );
+		
+		assertTrue( tree.remove( archive.get( 0 ) ) );
+		assertTrue( tree.contains( archive.get( 0 ) ) );
+		for( int i=0; i<400; ++i )
+			assertTrue( tree.remove( archive.get( i ) ) );
+		assertFalse( tree.contains( archive.get( 0 ) ) );
+		assertEquals( 100, tree.size() );
+		
+		for( int i=400; i<500; ++i ) {
+			assertTrue( tree.contains( archive.get( i ) ) );
+			assertEquals( archive.get( i ), tree.nearest( archive.get( i ), 1 ).get( 0 ) );
+		}
+		assertEquals( 100, tree.withinRadius( new BitVector( 16 ), 16 ).size() );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,73 @@
+package org.mitlware.solution.bitvector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestMarginalSampler {
+
+	@Test
+	public void testFrequencies() {
+		final int n = 130;
+		double [] p = new double [ n ];
+		for( int i=0; i<n; ++i )
+			p[ i ] = i % 5 == 0 ? 0.0 : i % 7 == 0 ? 1.0 : ( i % 10 ) / 10.0;
+		
+		MarginalSampler sampler = new MarginalSampler( p );
+		for( int i=0; i<n; ++i )
+			assertEquals( p[ i ], sampler.getProbability( i ), 1e-9 );
+		
+		Random random = new Random( 0x12345678 );
+		final int numSamples = 20000;
+		int [] counts = new int [ n ];
+		BitVector x = new BitVector( n );
+		for( int s=0; s<numSamples; ++s ) {
+			sampler.sample( random, x );
+			assertTrue( x.invariant() );
+			x.forEachSetBit( i -> ++counts[ i ] );
+		}
+		
+		for( int i=0; i<n; ++i ) {
+			if( p[ i ] == 0.0 || p[ i ] == 1.0 )
+				assertEquals( p[ i ] * numSamples, counts[ i ], 0.0 );
+			else
+				assertEquals( p[ i ], counts[ i ] / (double)numSamples, 0.02 );
+		}
+	}
+	
+	@Test
+	public void testParallelIsReproducible() {
+		double [] p = new double [ 1000 ];
+		Arrays.fill( p, 0.3 );
+		MarginalSampler sampler = new MarginalSampler( p );
+		
+		BitMatrix a = new BitMatrix( 200, p.length );
+		BitMatrix b = new BitMatrix( 200, p.length );
+		sampler.sample( new SplittableRandom( 0x12345678 ), a, false );
+		sampler.sample( new SplittableRandom( 0x12345678 ), b, true );
+		assertEquals( a, b );
+	}
+	
+	@Test
+	public void testSetProbability() {
+		MarginalSampler sampler = new MarginalSampler( new double [ 70 ] );
+		BitVector x = new BitVector( 70 );
+		sampler.sample( new Random( 1 ), x );
+		assertTrue( x.isEmpty() );
+		
+		sampler.setProbability( 69, 1.0 );
+		sampler.setProbability( 3, 0.25 );
+		assertEquals( 0.25, sampler.getProbability( 3 ), 0.0 );
+		sampler.sample( new Random( 1 ), x );
+		assertTrue( x.get( 69 ) );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,83 @@
+package org.mitlware.solution.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.mitlware.solution.bitvector.BitVector;
+import org.mitlware.solution.permutation.ArrayForm;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestFitnessCache {
+
+	@Test
+	public void testHitsAndMisses() {
+		AtomicInteger evaluations = new AtomicInteger();
+		FitnessCache< BitVector > cache = new FitnessCache< BitVector >( 100, FitnessCache.Eviction.LRU, 
+			BitVector::fingerprint64, x -> { evaluations.incrementAndGet(); return x.cardinality(); } );
+		
+		BitVector a = BitVector.fromInt( 7 );
+		assertEquals( 3.0, cache.applyAsDouble( a ), 0.0 );
+		assertEquals( 3.0, cache.applyAsDouble( a.clone() ), 0.0 );
+		assertEquals( 1, evaluations.get() );
+		assertEquals( 1, cache.hits() );
+		assertEquals( 1, cache.misses() );
+		assertEquals( 1, cache.size() );
+	}
+
+	private static void checkBounded( FitnessCache.Eviction eviction ) {
+		FitnessCache< ArrayForm > cache = new FitnessCache< ArrayForm >( 64, eviction, 4, 
+			ArrayForm::fingerprint64, x -> x.get( 0 ) );
+		Random random = new Random( 0x12345678 );
+		for( int i=0; i<10000; ++i ) {
+			ArrayForm p = new ArrayForm( 6, random );
+			assertEquals( p.get( 0 ), cache.applyAsDouble( p ), 0.0 );
+			assertTrue( cache.size() <= cache.capacity() );
+		}
+		assertEquals( 10000, cache.hits() + cache.misses() );
+		assertEquals( cache.misses() - cache.size(), cache.evictions() );
+		assertTrue( cache.hits() > 0 );
+	}
+
+	@Test
+	public void testBoundedLRU() {
+		checkBounded( FitnessCache.Eviction.LRU );
+	}
+
+	@Test
+	public void testBoundedCLOCK() {
+		checkBounded( FitnessCache.Eviction.CLOCK );
+	}
+	
+	@Test
+	public void testLRUKeepsRecent() {
+		FitnessCache< Integer > cache = new FitnessCache< Integer >( 2, FitnessCache.Eviction.LRU, 1, 
+			x -> x, x -> x );
+		cache.applyAsDouble( 1 );
+		cache.applyAsDouble( 2 );
+		cache.applyAsDouble( 1 );
+		cache.applyAsDouble( 3 ); // evicts 2
+		cache.applyAsDouble( 1 );
+		assertEquals( 2, cache.hits() );
+		cache.applyAsDouble( 2 );
+		assertEquals( 4, cache.misses() );
+		assertEquals( 2, cache.evictions() );
+	}
+	
+	@Test
+	public void testConcurrent() {
+		FitnessCache< Integer > cache = new FitnessCache< Integer >( 1000, FitnessCache.Eviction.CLOCK, 
+			x -> x, x -> 2.0 * x );
+		IntStream.range( 0, 100000 ).parallel().forEach( i -> 
+			assertEquals( 2.0 * ( i % 3000 ), cache.applyAsDouble( i % 3000 ), 0.0 ) );
+		assertEquals( 100000, cache.hits() + cache.misses() );
+		assertTrue( cache.size() <= cache.capacity() );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
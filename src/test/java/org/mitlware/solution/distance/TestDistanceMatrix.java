@@ -0,0 +1,75 @@
+package org.mitlware.solution.distance;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.mitlware.solution.bitvector.BitVector;
+import org.mitlware.solution.permutation.ArrayForm;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestDistanceMatrix {
+
+	@Test
+	public void testHamming() {
+		Random random = new Random( 0x12345678 );
+		List< BitVector > population = new ArrayList< BitVector >();
+		for( int i=0; i<150; ++i )
+			population.add( new BitVector( 100, random ) );
+		
+		DistanceMatrix sequential = DistanceMatrix.compute( population, BitVector::HammingDistance, false );
+		DistanceMatrix parallel = DistanceMatrix.compute( population, BitVector::HammingDistance, true );
+		assertArrayEquals( sequential.triangle(), parallel.triangle() );
+		
+		for( int i=0; i<population.size(); ++i )
+			for( int j=0; j<population.size(); ++j )
+				assertEquals( BitVector.HammingDistance( population.get( i ), population.get( j ) ), 
+					sequential.get( i, j ) );
+		
+		DistanceMatrix.forEachRow( population, BitVector::HammingDistance, ( row, i ) -> {
+			for( int j=0; j<row.length; ++j )
+				assertEquals( sequential.get( i, j ), row[ j ] );
+		} );
+		
+		double [] jaccard = DistanceMatrix.computeTriangle( population, BitVector::JaccardDistance, true );
+		assertEquals( BitVector.JaccardDistance( population.get( 3 ), population.get( 140 ) ), 
+			jaccard[ DistanceMatrix.packedIndex( population.size(), 3, 140 ) ], 0.0 );
+	}
+	
+	@Test
+	public void testKendallTau() {
+		ArrayForm a = new ArrayForm( 0, 1, 2, 3 );
+		ArrayForm b = new ArrayForm( 3, 2, 1, 0 );
+		assertEquals( 6, a.kendallTauDistance( b ) );
+		assertEquals( 0, b.kendallTauDistance( b ) );
+		assertEquals( 1, a.kendallTauDistance( new ArrayForm( 1, 0, 2, 3 ) ) );
+		
+		Random random = new Random( 0x12345678 );
+		List< ArrayForm > population = new ArrayList< ArrayForm >();
+		for( int i=0; i<70; ++i )
+			population.add( new ArrayForm( 30, random ) );
+		
+		DistanceMatrix m = DistanceMatrix.compute( population, 
+			( x, y ) -> (int)x.kendallTauDistance( y ), true );
+		for( int i=0; i<population.size(); ++i )
+			for( int j=0; j<population.size(); ++j ) {
+				int discordant = 0;
+				int [] x = population.get( i ).toArray();
+				int [] y = population.get( j ).toArray();
+				int [] px = new int [ 30 ], py = new int [ 30 ];
+				for( int k=0; k<30; ++k ) { px[ x[ k ] ] = k; py[ y[ k ] ] = k; }
+				for( int u=0; u<30; ++u )
+					for( int v=u+1; v<30; ++v )
+						if( ( px[ u ] < px[ v ] ) != ( py[ u ] < py[ v ] ) )
+							++discordant;
+				assertEquals( discordant, m.get( i, j ) );
+			}
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
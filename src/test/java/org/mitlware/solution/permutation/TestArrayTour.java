@@ -0,0 +1,115 @@
+package org.mitlware.solution.permutation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestArrayTour {
+
+	private static Tour.Distance euclidean( double [] x, double [] y ) {
+		return ( i, j ) -> Math.hypot( x[ i ] - x[ j ], y[ i ] - y[ j ] );
+	}
+
+	private static boolean hasEdge( ArrayTour t, int a, int b ) {
+		return t.next( a ) == b || t.prev( a ) == b;
+	}
+
+	@Test
+	public void testMovesAgreeWithDeltas() {
+		Random random = new Random( 0x12345678 );
+		final int n = 101;
+		double [] x = new double [ n ], y = new double [ n ];
+		for( int i=0; i<n; ++i ) {
+			x[ i ] = random.nextDouble();
+			y[ i ] = random.nextDouble();
+		}
+		Tour.Distance d = euclidean( x, y );
+		ArrayTour tour = new ArrayTour( new ArrayForm( n, random ) );
+
+		for( int trial=0; trial<300; ++trial ) {
+			double before = tour.length( d );
+			int a = random.nextInt( n ), c = random.nextInt( n );
+			if( a == c )
+				continue;
+
+			switch( trial % 3 ) {
+			case 0: {
+				final double delta = tour.twoOptDelta( a, c, d );
+				final int b = tour.next( a ), e = tour.next( c );
+				tour.twoOptMove( a, c );
+				assertEquals( before + delta, tour.length( d ), 1e-9 );
+				assertTrue( c == b || hasEdge( tour, a, c ) && hasEdge( tour, b, e ) );
+				break;
+			}
+			case 1: {
+				// a segment of up to 3 cities, starting at a:
+				int s2 = a;
+				for( int k=random.nextInt( 3 ); k>0; --k )
+					s2 = tour.next( s2 );
+				final int p = c;
+				if( p == tour.prev( a ) || tour.between( a, p, s2 ) )
+					continue;
+				final boolean reversed = random.nextBoolean();
+				final double delta = tour.orOptDelta( a, s2, p, reversed, d );
+				final int pn = tour.next( p );
+				tour.orOptMove( a, s2, p, reversed );
+				assertEquals( before + delta, tour.length( d ), 1e-9 );
+				assertTrue( hasEdge( tour, p, reversed ? s2 : a ) );
+				assertTrue( hasEdge( tour, pn, reversed ? a : s2 ) );
+				break;
+			}
+			default: {
+				int e = random.nextInt( n );
+				if( e == a || e == c || !tour.between( a, c, e ) )
+					continue;
+				final double delta = tour.threeOptDelta( a, c, e, d );
+				final int b = tour.next( a ), dd = tour.next( c ), f = tour.next( e );
+				tour.threeOptMove( a, c, e );
+				assertEquals( before + delta, tour.length( d ), 1e-9 );
+				assertTrue( hasEdge( tour, a, dd ) && hasEdge( tour, e, b ) && hasEdge( tour, c, f ) );
+			}
+			}
+			assertTrue( tour.invariant() );
+		}
+	}
+
+	@Test
+	public void testLocalSearch() {
+		Random random = new Random( 0x12345678 );
+		final int n = 500;
+		double [] x = new double [ n ], y = new double [ n ];
+		for( int i=0; i<n; ++i ) {
+			x[ i ] = random.nextDouble();
+			y[ i ] = random.nextDouble();
+		}
+		Tour.Distance d = euclidean( x, y );
+		int [][] candidates = Tour.candidateLists( n, 8, d );
+		for( int i=0; i<n; ++i ) {
+			assertEquals( 8, candidates[ i ].length );
+			for( int k=1; k<8; ++k )
+				assertTrue( d.distance( i, candidates[ i ][ k - 1 ] ) <= d.distance( i, candidates[ i ][ k ] ) );
+		}
+
+		ArrayTour tour = new ArrayTour( new ArrayForm( n, random ) );
+		final double before = tour.length( d );
+		assertTrue( tour.twoOptLocalSearch( candidates, d ) > 0 );
+		assertTrue( tour.invariant() );
+		assertTrue( tour.length( d ) < before / 3 );
+
+		// don't-look bits can miss a few moves, which a fresh search then finds:
+		while( tour.twoOptLocalSearch( candidates, d ) > 0 )
+			assertTrue( tour.invariant() );
+
+		for( int a=0; a<n; ++a )
+			for( int c : candidates[ a ] )
+				if( c != tour.next( a ) && a != tour.next( c ) )
+					assertTrue( tour.twoOptDelta( a, c, d ) > -1e-9 );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -1,6 +1,9 @@
 package org.mitlware.solution.permutation;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -76,6 +79,137 @@ public final class TestArrayUtils {
     	assertArrayEquals( q, ArrayUtilsUnchecked.subtract( q, p ) ); 
     }
 
+    @Test
+    public void testHammingDistance() {
+    	int [] p = new int [] { 0,1,2,3 };
+    	int [] q = new int [] { 2,1,3,0 };
+    	assertEquals( 0, ArrayUtilsUnchecked.hammingDistance( p, p ) );
+    	assertEquals( 3, ArrayUtilsUnchecked.hammingDistance( p, q ) );
+    }
+
+    @Test
+    public void testLehmerCode() {
+    	Random random = new Random( 0x12345678 );
+    	for( int n : new int [] { 1, 2, 5, 64, 300 } ) {
+    		LehmerCode lehmer = new LehmerCode( n );
+    		for( int trial=0; trial<20; ++trial ) {
+    			int [] p = new ArrayForm( n, random ).toArray();
+    			int [] q = new ArrayForm( n, random ).toArray();
+    			
+    			int [] code = lehmer.encode( p );
+    			for( int i=0; i<n - 1; ++i ) {
+    				int smaller = 0;
+    				for( int j=i + 1; j<n; ++j )
+    					if( p[ j ] < p[ i ] )
+    						++smaller;
+    				assertEquals( smaller, code[ i ] );
+    			}
+    			assertArrayEquals( p, lehmer.decode( code ) );
+    			
+    			int [] sum = ArrayUtilsUnchecked.add( p, q );
+    			assertArrayEquals( p, ArrayUtilsUnchecked.subtract( sum, q ) );
+    			lehmer.subtract( sum, q, sum );
+    			assertArrayEquals( p, sum );
+    		}
+    	}
+    }
+
+    @Test
+    public void testAlgebraIntoDestinations() {
+    	Random random = new Random( 0x12345678 );
+    	for( int n : new int [] { 1, 2, 7, 50 } ) {
+    		for( int trial=0; trial<20; ++trial ) {
+    			ArrayForm a = new ArrayForm( n, random );
+    			ArrayForm b = new ArrayForm( n, random );
+    			int [] pa = a.toArray(), pb = b.toArray();
+    			int [] inva = new int [ n ], invb = new int [ n ];
+    			for( int i=0; i<n; ++i ) {
+    				inva[ pa[ i ] ] = i;
+    				invb[ pb[ i ] ] = i;
+    			}
+    			int [] product = new int [ n ], quotient = new int [ n ], modulus = new int [ n ];
+    			int [] conj = new int [ n ], comm = new int [ n ], square = new int [ n ];
+    			for( int i=0; i<n; ++i ) {
+    				product[ i ] = pb[ pa[ i ] ];
+    				quotient[ i ] = invb[ pa[ i ] ];
+    				modulus[ i ] = pb[ inva[ i ] ];
+    				conj[ i ] = invb[ pa[ pb[ i ] ] ];
+    				comm[ i ] = inva[ invb[ pa[ pb[ i ] ] ] ];
+    				square[ i ] = pa[ pa[ i ] ];
+    			}
+
+    			ArrayForm dest = new ArrayForm( n );
+    			a.multiply( b, dest );
+    			assertArrayEquals( product, dest.toArray() );
+    			a.divide( b, dest );
+    			assertArrayEquals( quotient, dest.toArray() );
+    			a.mod( b, dest );
+    			assertArrayEquals( modulus, dest.toArray() );
+    			a.conjugate( b, dest );
+    			assertArrayEquals( conj, dest.toArray() );
+    			a.commutatorWith( b, dest );
+    			assertArrayEquals( comm, dest.toArray() );
+    			a.invert( dest );
+    			assertArrayEquals( inva, dest.toArray() );
+    			assertArrayEquals( pa, a.toArray() );
+
+    			// dest aliasing either operand:
+    			ArrayForm x = a.clone();
+    			x.multiply( b );
+    			assertArrayEquals( product, x.toArray() );
+    			x = b.clone();
+    			a.multiply( x, x );
+    			assertArrayEquals( product, x.toArray() );
+    			x = a.clone();
+    			x.divide( b );
+    			assertArrayEquals( quotient, x.toArray() );
+    			x = b.clone();
+    			a.divide( x, x );
+    			assertArrayEquals( quotient, x.toArray() );
+    			x = a.clone();
+    			x.mod( b );
+    			assertArrayEquals( modulus, x.toArray() );
+    			x = b.clone();
+    			a.mod( x, x );
+    			assertArrayEquals( modulus, x.toArray() );
+    			x = a.clone();
+    			x.conjugate( b );
+    			assertArrayEquals( conj, x.toArray() );
+    			x = a.clone();
+    			x.conjugate( x );
+    			assertArrayEquals( pa, x.toArray() );
+    			x.multiply( x );
+    			assertArrayEquals( square, x.toArray() );
+    			x = a.clone();
+    			x.invert();
+    			assertArrayEquals( inva, x.toArray() );
+    			x.divide( x );
+    			assertArrayEquals( new ArrayForm( n ).toArray(), x.toArray() );
+
+    			int [] expected = ArrayUtilsUnchecked.identityPermutation( n );
+    			for( int k=0; k<12; ++k ) {
+    				a.power( k, dest );
+    				assertArrayEquals( expected, dest.toArray() );
+    				a.power( -k, dest );
+    				assertArrayEquals( ArrayUtilsUnchecked.invert( expected ), dest.toArray() );
+    				expected = ArrayUtilsUnchecked.multiply( expected, pa );
+    			}
+    		}
+    	}
+    }
+
+    @Test
+    public void testRotateArray() {
+    	for( int n : new int [] { 0, 1, 5, 8 } ) {
+    		for( int amount=-2 * n - 1; amount<=2 * n + 1; ++amount ) {
+    			int [] array = ArrayUtilsUnchecked.identityPermutation( n );
+    			ArrayUtilsUnchecked.rotateArray( array, amount );
+    			for( int i=0; i<n; ++i )
+    				assertEquals( Math.floorMod( i - amount, n ), array[ i ] );
+    		}
+    	}
+    }
+
 	/*****    
     ///////////////////////////////
     
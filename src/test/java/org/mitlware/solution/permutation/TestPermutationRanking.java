@@ -0,0 +1,72 @@
+package org.mitlware.solution.permutation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestPermutationRanking {
+
+	@Test
+	public void testBijection() {
+		final int n = 6;
+		for( PermutationRanking.Order order : PermutationRanking.Order.values() ) {
+			Set< ArrayForm > seen = new HashSet< ArrayForm >();
+			ArrayForm previous = null;
+			for( long r=0; r<PermutationRanking.factorial( n ); ++r ) {
+				ArrayForm p = ArrayForm.unrank( n, r, order );
+				assertTrue( seen.add( p ) );
+				assertEquals( r, p.rank( order ) );
+				assertEquals( BigInteger.valueOf( r ), p.bigRank( order ) );
+				assertEquals( p, ArrayForm.unrank( n, BigInteger.valueOf( r ), order ) );
+				if( order == PermutationRanking.Order.LEXICOGRAPHIC && previous != null )
+					assertTrue( previous.compareTo( p ) < 0 );
+				previous = p;
+			}
+			assertEquals( 720, seen.size() );
+		}
+	}
+
+	@Test
+	public void testLargeSizes() {
+		Random random = new Random( 0x12345678 );
+		for( PermutationRanking.Order order : PermutationRanking.Order.values() ) {
+			ArrayForm p = new ArrayForm( 20, random );
+			assertEquals( p, ArrayForm.unrank( 20, p.rank( order ), order ) );
+
+			ArrayForm q = new ArrayForm( 100, random );
+			assertEquals( q, ArrayForm.unrank( 100, q.bigRank( order ), order ) );
+		}
+
+		int [] reversed = new int [ 20 ];
+		for( int i=0; i<20; ++i )
+			reversed[ i ] = 19 - i;
+		assertEquals( PermutationRanking.factorial( 20 ) - 1,
+			PermutationRanking.rank( reversed, PermutationRanking.Order.LEXICOGRAPHIC ) );
+	}
+
+	@Test
+	public void testBulkUnrank() {
+		final int n = 7;
+		final int count = 500;
+		for( PermutationRanking.Order order : PermutationRanking.Order.values() ) {
+			int [] flat = new int [ count * n ];
+			PermutationRanking.unrank( n, 4000, count, order, flat, 0 );
+			for( int r=0; r<count; ++r ) {
+				int [] p = new int [ n ];
+				System.arraycopy( flat, r * n, p, 0, n );
+				assertArrayEquals( PermutationRanking.unrank( n, 4000 + r, order ), p );
+			}
+		}
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////
@@ -0,0 +1,95 @@
+package org.mitlware.solution.permutation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+//////////////////////////////////////////////////////////////////////
+
+public final class TestTwoLevelTour {
+
+	private static void assertSameCycle( Tour expected, Tour actual ) {
+		for( int c=0; c<expected.size(); ++c ) {
+			final int n = expected.next( c ), p = expected.prev( c );
+			assertTrue( actual.next( c ) == n && actual.prev( c ) == p 
+				|| actual.next( c ) == p && actual.prev( c ) == n );
+		}
+	}
+
+	@Test
+	public void testAgreesWithArrayTour() {
+		Random random = new Random( 0x12345678 );
+		for( int n : new int [] { 2, 3, 10, 57, 300 } ) {
+			for( int groupSize : new int [] { 1, 3, 8, 1000 } ) {
+				ArrayForm perm = new ArrayForm( n, random );
+				ArrayTour expected = new ArrayTour( perm );
+				TwoLevelTour actual = new TwoLevelTour( perm, groupSize );
+				assertTrue( actual.invariant() );
+				assertSameCycle( expected, actual );
+
+				for( int trial=0; trial<200; ++trial ) {
+					final int a = random.nextInt( n ), c = random.nextInt( n );
+					if( a == c || n < 4 ) {
+						actual.reversePath( a, c );
+						assertTrue( actual.invariant() );
+						continue;
+					}
+					if( trial % 2 == 0 ) {
+						// the same edges in both tours, whatever their orientations:
+						final int an = expected.next( a ), cn = expected.next( c );
+						expected.exchange( a, an, c, cn );
+						actual.exchange( a, an, c, cn );
+					}
+					else {
+						final int e = random.nextInt( n );
+						if( e == a || e == c || !expected.between( a, c, e ) )
+							continue;
+						final int b = expected.next( a ), d = expected.next( c ), f = expected.next( e );
+						expected.exchange( a, b, c, d );
+						actual.exchange( a, b, c, d );
+						expected.exchange( b, d, e, f );
+						actual.exchange( b, d, e, f );
+					}
+					assertTrue( actual.invariant() );
+					assertSameCycle( expected, actual );
+				}
+
+				// between agrees with positions along the actual tour:
+				int [] order = actual.toArrayForm().toArray();
+				int [] position = ArrayUtilsUnchecked.invert( order );
+				for( int trial=0; trial<200; ++trial ) {
+					final int a = random.nextInt( n ), b = random.nextInt( n ), c = random.nextInt( n );
+					int j = position[ b ] - position[ a ], k = position[ c ] - position[ a ];
+					if( j < 0 ) j += n;
+					if( k < 0 ) k += n;
+					assertEquals( j <= k, actual.between( a, b, c ) );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLocalSearch() {
+		Random random = new Random( 0x12345678 );
+		final int n = 2000;
+		double [] x = new double [ n ], y = new double [ n ];
+		for( int i=0; i<n; ++i ) {
+			x[ i ] = random.nextDouble();
+			y[ i ] = random.nextDouble();
+		}
+		Tour.Distance d = ( i, j ) -> Math.hypot( x[ i ] - x[ j ], y[ i ] - y[ j ] );
+		int [][] candidates = Tour.candidateLists( n, 6, d );
+
+		ArrayForm start = new ArrayForm( n, random );
+		TwoLevelTour tour = new TwoLevelTour( start );
+		final double before = tour.length( d );
+		while( tour.twoOptLocalSearch( candidates, d ) > 0 )
+			assertTrue( tour.invariant() );
+		assertTrue( tour.length( d ) < before / 5 );
+	}
+}
+
+// End ///////////////////////////////////////////////////////////////